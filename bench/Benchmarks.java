@@ -0,0 +1,247 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Dependency-free microbenchmark harness for the parsing pipeline.
+ * Each stage is measured separately (lexing, shunting-yard, evaluation) and end to end,
+ * over generated expressions of varying length, nesting depth and operator mix.
+ * Reports average time per operation and bytes allocated per operation by the benchmark thread.
+ * Benchmarks named {@code ...WithMetrics} run with {@link PipelineMetrics} enabled, all others with it disabled,
+ * so the cost of instrumentation is their difference from the plain benchmark of the same name.
+ * <p>
+ * Every benchmark of every configuration runs in {@code --forks} fresh JVMs of its own, started with the same
+ * JVM options as this one, so that profiles collected by the JIT for one benchmark never shape the code measured
+ * for another. {@code --forks=0} runs everything in this JVM instead.
+ * <p>
+ * Usage: {@code java -cp out Benchmarks [--benchmarks=lex,shunt] [--lengths=10,1000] [--depths=0,8]
+ * [--mixes=MIXED,FUNCTIONS] [--warmup-ms=1000] [--measure-ms=1000] [--iterations=5] [--forks=1]}
+ */
+public class Benchmarks {
+    private static final String WITH_METRICS = "WithMetrics";
+
+    private static volatile Object sink;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        String[] benchmarks = options.getOrDefault("benchmarks", "").split(",");
+        String[] lengths = options.getOrDefault("lengths", "10,1000,100000,1000000").split(",");
+        String[] depths = options.getOrDefault("depths", "0,8").split(",");
+        String[] mixes = options.getOrDefault("mixes", "ADDITIVE,MIXED,FUNCTIONS").split(",");
+        long warmupMs = Long.parseLong(options.getOrDefault("warmup-ms", "1000"));
+        long measureMs = Long.parseLong(options.getOrDefault("measure-ms", "1000"));
+        int iterations = Integer.parseInt(options.getOrDefault("iterations", "5"));
+        int forks = Integer.parseInt(options.getOrDefault("forks", "1"));
+
+        // forked JVMs report their rows under the header of the JVM that started them
+        if (!options.getOrDefault("header", "true").equals("false")) {
+            System.out.printf("%-27s %-14s %5s %9s %14s %12s %14s%n",
+                    "benchmark", "mix", "depth", "tokens", "ns/op", "error", "B/op");
+        }
+        for (String mixName : mixes) {
+            ExpressionGenerator.Mix mix = ExpressionGenerator.Mix.valueOf(mixName.toUpperCase(Locale.ROOT));
+            for (String depth : depths) {
+                for (String length : lengths) {
+                    if (forks > 0) {
+                        // the suite of a constant is built only for the names of the benchmarks
+                        for (String name : suite("0").keySet()) {
+                            if (!selected(benchmarks, name)) {
+                                continue;
+                            }
+                            for (int fork = 0; fork < forks; fork++) {
+                                fork(name, mixName, depth, length, options);
+                            }
+                        }
+                        continue;
+                    }
+
+                    String source = new ExpressionGenerator(42, mix)
+                            .generate(Integer.parseInt(length), Integer.parseInt(depth));
+                    Map<String, Supplier<Object>> suite = suite(source);
+                    int tokens = ShutingYard.parse(source).size();
+                    for (Map.Entry<String, Supplier<Object>> benchmark : suite.entrySet()) {
+                        if (!selected(benchmarks, benchmark.getKey())) {
+                            continue;
+                        }
+                        PipelineMetrics.getInstance().setEnabled(benchmark.getKey().endsWith(WITH_METRICS));
+                        Result result = measure(benchmark.getValue(), warmupMs, measureMs, iterations);
+                        PipelineMetrics.getInstance().setEnabled(false);
+                        System.out.printf(Locale.ROOT, "%-27s %-14s %5s %9d %14.1f %12.1f %14.1f%n",
+                                benchmark.getKey(), mix, depth, tokens,
+                                result.nanosPerOp, result.error, result.bytesPerOp);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the benchmarks of one generated expression by name, in the order they are reported
+     */
+    private static Map<String, Supplier<Object>> suite(String source) {
+        IList<Token> tokens = ShutingYard.parse(source);
+        IList<Token> polish = ShutingYard.process(tokens);
+        CompiledExpression compiled = CompiledExpression.of(polish);
+        CheckedExpression checked = CheckedExpression.of(compiled, CheckedExpression.OverflowPolicy.SATURATE);
+        SharedExpression shared = SharedExpression.of(compiled);
+        ExpressionTree tree = ExpressionTree.of(compiled);
+        CompiledExpression balanced = ExpressionTree.of(compiled, true).toBalancedProgram();
+        TokenBuffer tokenBuffer = new TokenBuffer();
+        TokenBuffer polishBuffer = new TokenBuffer();
+        TokenBuffer scratch = new TokenBuffer();
+        ShutingYard.parse(source, tokenBuffer);
+        ShutingYard.process(tokenBuffer, polishBuffer);
+        TokenBuffer lexed = new TokenBuffer();
+        TokenBuffer shunted = new TokenBuffer();
+        int[] noVariables = new int[0];
+        long[] noLongVariables = new long[0];
+        double[] noDoubleVariables = new double[0];
+
+        Map<String, Supplier<Object>> suite = new LinkedHashMap<>();
+        suite.put("lex", () -> ShutingYard.parse(source));
+        suite.put("shunt", () -> ShutingYard.process(tokens));
+        suite.put("evaluate", () -> ShutingYard.evaluate(polish));
+        suite.put("evaluateCompiled", compiled::evaluate);
+        suite.put("evaluateChecked", checked::evaluate);
+        suite.put("evaluateShared", shared::evaluate);
+        suite.put("evaluateLong", () -> compiled.evaluate(noLongVariables));
+        suite.put("evaluateDouble", () -> compiled.evaluate(noDoubleVariables));
+        suite.put("evaluateTree", () -> tree.evaluate(noVariables));
+        suite.put("evaluateBalanced", balanced::evaluate);
+        suite.put("lexBuffer", () -> {
+            ShutingYard.parse(source, lexed);
+            return lexed;
+        });
+        suite.put("shuntBuffer", () -> {
+            ShutingYard.process(tokenBuffer, shunted, scratch);
+            return shunted;
+        });
+        suite.put("evaluateBuffer", () -> ShutingYard.evaluate(polishBuffer, noVariables));
+        suite.put("endToEnd", () -> ShutingYard.evaluate(ShutingYard.process(ShutingYard.parse(source))));
+        suite.put("evaluateCompiled" + WITH_METRICS, compiled::evaluate);
+        suite.put("endToEnd" + WITH_METRICS,
+                () -> ShutingYard.evaluate(ShutingYard.process(ShutingYard.parse(source))));
+        return suite;
+    }
+
+    /**
+     * Runs one benchmark of one configuration in a new JVM with the options of this one.
+     */
+    private static void fork(String benchmark, String mix, String depth, String length, Map<String, String> options)
+            throws IOException, InterruptedException {
+        Map<String, String> forkOptions = new LinkedHashMap<>(options);
+        forkOptions.put("benchmarks", benchmark);
+        forkOptions.put("mixes", mix);
+        forkOptions.put("depths", depth);
+        forkOptions.put("lengths", length);
+        fork(Benchmarks.class, forkOptions);
+    }
+
+    /**
+     * Runs a benchmark harness in a new JVM with the JVM options of this one, without forking again
+     * or printing its header.
+     *
+     * @param options {@code --name=value} options of the harness, selecting the benchmark to run
+     */
+    static void fork(Class<?> harness, Map<String, String> options) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(harness.getName());
+        Map<String, String> forkOptions = new LinkedHashMap<>(options);
+        forkOptions.put("forks", "0");
+        forkOptions.put("header", "false");
+        for (Map.Entry<String, String> option : forkOptions.entrySet()) {
+            command.add("--" + option.getKey() + "=" + option.getValue());
+        }
+        int status = new ProcessBuilder(command).inheritIO().start().waitFor();
+        if (status != 0) {
+            throw new RuntimeException("Benchmark " + options.get("benchmarks") + " exited with status " + status);
+        }
+    }
+
+    static boolean selected(String[] benchmarks, String name) {
+        if (benchmarks.length == 1 && benchmarks[0].isEmpty()) {
+            return true;
+        }
+        for (String benchmark : benchmarks) {
+            if (benchmark.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static Result measure(Supplier<Object> operation, long warmupMs, long measureMs, int iterations) {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        run(operation, warmupMs);
+        double[] samples = new double[iterations];
+        long totalOps = 0;
+        long totalBytes = 0;
+        for (int i = 0; i < iterations; i++) {
+            long bytesBefore = threads.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            long ops = run(operation, measureMs);
+            long elapsed = System.nanoTime() - start;
+            totalBytes += threads.getCurrentThreadAllocatedBytes() - bytesBefore;
+            totalOps += ops;
+            samples[i] = (double) elapsed / ops;
+        }
+
+        double mean = 0;
+        for (double sample : samples) {
+            mean += sample;
+        }
+        mean /= iterations;
+        double variance = 0;
+        for (double sample : samples) {
+            variance += (sample - mean) * (sample - mean);
+        }
+        double error = iterations > 1 ? Math.sqrt(variance / (iterations - 1)) : 0;
+        return new Result(mean, error, (double) totalBytes / totalOps);
+    }
+
+    private static long run(Supplier<Object> operation, long durationMs) {
+        long deadline = System.nanoTime() + durationMs * 1_000_000;
+        long ops = 0;
+        int batch = 1;
+        do {
+            for (int i = 0; i < batch; i++) {
+                sink = operation.get();
+            }
+            ops += batch;
+            batch = Math.min(batch * 2, 1 << 16);
+        } while (System.nanoTime() < deadline);
+        return ops;
+    }
+
+    static final class Result {
+        final double nanosPerOp;
+        final double error;
+        final double bytesPerOp;
+
+        Result(double nanosPerOp, double error, double bytesPerOp) {
+            this.nanosPerOp = nanosPerOp;
+            this.error = error;
+            this.bytesPerOp = bytesPerOp;
+        }
+    }
+}
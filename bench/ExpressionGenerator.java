@@ -0,0 +1,75 @@
+import java.util.Random;
+
+/**
+ * Generates random valid expressions of roughly a given number of tokens.
+ * Divisors are always non-zero literals, so generated expressions never fail to evaluate.
+ */
+final class ExpressionGenerator {
+    enum Mix {
+        ADDITIVE("+", "-"),
+        MULTIPLICATIVE("*", "/"),
+        MIXED("+", "-", "*", "/"),
+        FUNCTIONS("+", "-", "*", "/");
+
+        final String[] operators;
+
+        Mix(String... operators) {
+            this.operators = operators;
+        }
+    }
+
+    private final Random random;
+    private final Mix mix;
+
+    ExpressionGenerator(long seed, Mix mix) {
+        this.random = new Random(seed);
+        this.mix = mix;
+    }
+
+    /**
+     * @param tokens approximate number of tokens
+     * @param depth  maximum nesting depth of parentheses or function calls
+     */
+    public String generate(int tokens, int depth) {
+        StringBuilder builder = new StringBuilder(tokens * 2);
+        expression(builder, Math.max(tokens, 1), depth);
+        return builder.toString();
+    }
+
+    private int expression(StringBuilder builder, int budget, int depth) {
+        int used = operand(builder, budget, depth);
+        while (used + 2 <= budget) {
+            String operator = mix.operators[random.nextInt(mix.operators.length)];
+            builder.append(' ').append(operator).append(' ');
+            if (operator.equals("/")) {
+                builder.append(1 + random.nextInt(9));
+                used += 2;
+            }
+            else {
+                used += 1 + operand(builder, budget - used - 1, depth);
+            }
+        }
+        return used;
+    }
+
+    private int operand(StringBuilder builder, int budget, int depth) {
+        if (depth == 0 || budget < 8 || random.nextInt(4) != 0) {
+            builder.append(random.nextInt(10));
+            return 1;
+        }
+
+        int inner = Math.max(3, Math.min(budget - 6, budget / 4 + random.nextInt(budget / 4 + 1)));
+        if (mix == Mix.FUNCTIONS) {
+            builder.append(random.nextBoolean() ? "max" : "min").append(" ( ");
+            int used = expression(builder, inner / 2, depth - 1);
+            builder.append(" , ");
+            used += expression(builder, inner / 2, depth - 1);
+            builder.append(" )");
+            return used + 4;
+        }
+        builder.append("( ");
+        int used = expression(builder, inner, depth - 1);
+        builder.append(" )");
+        return used + 2;
+    }
+}
@@ -0,0 +1,130 @@
+import java.util.Arrays;
+import jdk.incubator.foreign.MemoryAccess;
+import jdk.incubator.foreign.MemorySegment;
+import jdk.incubator.foreign.ResourceScope;
+
+/**
+ * Variant of {@link OffHeapTokenBuffer} whose chunks are native memory segments of one {@link ResourceScope},
+ * so {@link #close()} frees all of its memory at once instead of leaving it to the garbage collector.
+ * Native memory is not capped by {@code -XX:MaxDirectMemorySize}.
+ * <p>
+ * Needs the incubating foreign memory API: compile and run with {@code --add-modules jdk.incubator.foreign}.
+ * The scope is shared, so the buffer may be handed from one thread to another, but it is not thread-safe.
+ */
+final class ForeignTokenBuffer implements ITokenBuffer, AutoCloseable {
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final ResourceScope scope = ResourceScope.newSharedScope();
+    private MemorySegment[] kinds = new MemorySegment[4];
+    private MemorySegment[] payloads = new MemorySegment[4];
+    private int chunks = 0;
+    private int size = 0;
+    private final VariableTable variables = new VariableTable();
+
+    @Override
+    public void add(byte kind, int payload) {
+        if (size == chunks << CHUNK_BITS) {
+            addChunk();
+        }
+        int chunk = size >>> CHUNK_BITS;
+        int index = size & CHUNK_MASK;
+        MemoryAccess.setByteAtOffset(kinds[chunk], index, kind);
+        MemoryAccess.setIntAtOffset(payloads[chunk], (long) index << 2, payload);
+        size++;
+    }
+
+    @Override
+    public byte kind(int i) {
+        checkIndex(i);
+        return MemoryAccess.getByteAtOffset(kinds[i >>> CHUNK_BITS], i & CHUNK_MASK);
+    }
+
+    @Override
+    public int payload(int i) {
+        checkIndex(i);
+        return MemoryAccess.getIntAtOffset(payloads[i >>> CHUNK_BITS], (long) (i & CHUNK_MASK) << 2);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void removeLast() {
+        if (size == 0) {
+            throw new RuntimeException("Buffer is empty");
+        }
+        size--;
+    }
+
+    /**
+     * Removes all tokens and variables. Chunks already allocated are kept for reuse.
+     */
+    @Override
+    public void clear() {
+        size = 0;
+        variables.clear();
+    }
+
+    @Override
+    public VariableTable getVariables() {
+        return variables;
+    }
+
+    /**
+     * @return bytes of native memory held by this buffer
+     */
+    public long allocatedBytes() {
+        return (long) chunks * CHUNK_SIZE * (Byte.BYTES + Integer.BYTES);
+    }
+
+    /**
+     * Frees all chunks. The buffer cannot be used afterwards; closing twice does nothing.
+     */
+    @Override
+    public void close() {
+        if (!scope.isAlive()) {
+            return;
+        }
+        scope.close();
+        Arrays.fill(kinds, 0, chunks, null);
+        Arrays.fill(payloads, 0, chunks, null);
+        chunks = 0;
+        size = 0;
+        variables.clear();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            if (i != 0) {
+                builder.append(' ');
+            }
+            builder.append(get(i));
+        }
+        return builder.toString();
+    }
+
+    private void addChunk() {
+        if (!scope.isAlive()) {
+            throw new IllegalStateException("Buffer is closed");
+        }
+        if (chunks == kinds.length) {
+            kinds = Arrays.copyOf(kinds, chunks * 2);
+            payloads = Arrays.copyOf(payloads, chunks * 2);
+        }
+        kinds[chunks] = MemorySegment.allocateNative(CHUNK_SIZE, scope);
+        payloads[chunks] = MemorySegment.allocateNative((long) CHUNK_SIZE * Integer.BYTES, Integer.BYTES, scope);
+        chunks++;
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException(i);
+        }
+    }
+}
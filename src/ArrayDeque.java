@@ -0,0 +1,172 @@
+import java.util.Iterator;
+
+/**
+ * Growable circular array with amortized O(1) operations at both ends.
+ */
+public class ArrayDeque<T> implements IStack<T>, IList<T> {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private Object[] elements;
+    private int first = 0;
+    int size = 0;
+
+    public ArrayDeque() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ArrayDeque(int capacity) {
+        elements = new Object[Math.max(capacity, 1)];
+    }
+
+    @Override
+    public T head() {
+        if (size == 0) {
+            throw new RuntimeException("The list is empty");
+        }
+
+        return get(0);
+    }
+
+    @Override
+    public T tail() {
+        if (size == 0) {
+            throw new RuntimeException("The list is empty");
+        }
+
+        return get(size - 1);
+    }
+
+    @Override
+    public void putFront(T e) {
+        ensureCapacity();
+        first = first == 0 ? elements.length - 1 : first - 1;
+        elements[first] = e;
+        size++;
+    }
+
+    @Override
+    public void putBack(T e) {
+        ensureCapacity();
+        elements[index(size)] = e;
+        size++;
+    }
+
+    @Override
+    public T popFront() {
+        if (size == 0) {
+            throw new RuntimeException("The list is empty");
+        }
+
+        T element = get(0);
+        elements[first] = null;
+        first = index(1);
+        size--;
+        return element;
+    }
+
+    @Override
+    public T popBack() {
+        if (size == 0) {
+            throw new RuntimeException("The list is empty");
+        }
+
+        int last = index(size - 1);
+        @SuppressWarnings("unchecked")
+        T element = (T) elements[last];
+        elements[last] = null;
+        size--;
+        return element;
+    }
+
+    @Override
+    public T top() {
+        return tail();
+    }
+
+    @Override
+    public T pop() {
+        return popBack();
+    }
+
+    @Override
+    public void push(T element) {
+        putBack(element);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes all elements but keeps the allocated capacity for reuse.
+     */
+    @Override
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            elements[index(i)] = null;
+        }
+        first = 0;
+        size = 0;
+    }
+
+    /**
+     * @param i position counted from the head
+     */
+    public T get(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException(i);
+        }
+
+        @SuppressWarnings("unchecked")
+        T element = (T) elements[index(i)];
+        return element;
+    }
+
+    private int index(int i) {
+        int index = first + i;
+        return index >= elements.length ? index - elements.length : index;
+    }
+
+    private void ensureCapacity() {
+        if (size < elements.length) {
+            return;
+        }
+
+        Object[] grown = new Object[elements.length * 2];
+        int headPart = Math.min(size, elements.length - first);
+        System.arraycopy(elements, first, grown, 0, headPart);
+        System.arraycopy(elements, 0, grown, headPart, size - headPart);
+        elements = grown;
+        first = 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("[");
+        for (T e : this) {
+            builder.append(e.toString()).append(", ");
+        }
+        builder.append("]");
+        return builder.toString();
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new MyIterator();
+    }
+
+    private class MyIterator implements Iterator<T> {
+        int current = 0;
+
+        @Override
+        public boolean hasNext() {
+            return current < size;
+        }
+
+        @Override
+        public T next() {
+            return get(current++);
+        }
+    }
+}
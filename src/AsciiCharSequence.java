@@ -0,0 +1,58 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Read-only {@link CharSequence} view of ASCII bytes in a {@link ByteBuffer}, so that text can be
+ * lexed in place without decoding it into a {@link String}. The view can be re-pointed with {@link #set}.
+ */
+final class AsciiCharSequence implements CharSequence {
+    private ByteBuffer buffer;
+    private int start;
+    private int length;
+
+    AsciiCharSequence() {
+    }
+
+    AsciiCharSequence(ByteBuffer buffer, int start, int end) {
+        set(buffer, start, end);
+    }
+
+    /**
+     * Points the view at {@code buffer[start, end)}.
+     */
+    public AsciiCharSequence set(ByteBuffer buffer, int start, int end) {
+        this.buffer = buffer;
+        this.start = start;
+        this.length = end - start;
+        return this;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return (char) (buffer.get(start + index) & 0xff);
+    }
+
+    @Override
+    public CharSequence subSequence(int from, int to) {
+        if (from < 0 || to > length || from > to) {
+            throw new IndexOutOfBoundsException();
+        }
+        return new AsciiCharSequence(buffer, start + from, start + to);
+    }
+
+    @Override
+    public String toString() {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = charAt(i);
+        }
+        return new String(chars);
+    }
+}
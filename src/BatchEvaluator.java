@@ -0,0 +1,135 @@
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Evaluates one compiled program over many rows of variable bindings.
+ * The program is interpreted once per block of rows, and each instruction runs as a tight loop
+ * over the block, which the JIT can unroll and vectorize.
+ * A division by zero throws {@link ArithmeticException} once the blocks before the failing one have been written,
+ * so the output is then only partially filled.
+ * Not thread-safe: keep one instance per thread.
+ */
+final class BatchEvaluator {
+    static final int BLOCK_SIZE = 1024;
+
+    private int[][] stack = new int[0][];
+    private int[][] columnBlocks = new int[0][];
+
+    /**
+     * @param columns column {@code i} holds the values of variable slot {@code i} for every row
+     * @param out     receives one result per row; its length is the number of rows
+     */
+    public void evaluate(CompiledExpression expression, int[][] columns, int[] out) {
+        checkColumnCount(expression, columns.length);
+        int rows = out.length;
+        for (int[] column : columns) {
+            if (column.length < rows) {
+                throw new IllegalArgumentException("Column is shorter than the output");
+            }
+        }
+        ensureStack(expression.getMaxDepth());
+        for (int start = 0; start < rows; start += BLOCK_SIZE) {
+            int length = Math.min(BLOCK_SIZE, rows - start);
+            System.arraycopy(evaluateBlock(expression, columns, start, length), 0, out, start, length);
+        }
+    }
+
+    /**
+     * Reads {@code out.remaining()} rows from each column, advancing the positions of all buffers.
+     * On a division by zero, the columns are left after the failing block and the output after the last block
+     * that was written.
+     */
+    public void evaluate(CompiledExpression expression, IntBuffer[] columns, IntBuffer out) {
+        checkColumnCount(expression, columns.length);
+        int rows = out.remaining();
+        for (IntBuffer column : columns) {
+            if (column.remaining() < rows) {
+                throw new IllegalArgumentException("Column is shorter than the output");
+            }
+        }
+        ensureStack(expression.getMaxDepth());
+        if (columnBlocks.length < columns.length) {
+            columnBlocks = new int[columns.length][BLOCK_SIZE];
+        }
+        for (int start = 0; start < rows; start += BLOCK_SIZE) {
+            int length = Math.min(BLOCK_SIZE, rows - start);
+            for (int i = 0; i < columns.length; i++) {
+                columns[i].get(columnBlocks[i], 0, length);
+            }
+            out.put(evaluateBlock(expression, columnBlocks, 0, length), 0, length);
+        }
+    }
+
+    private int[] evaluateBlock(CompiledExpression expression, int[][] columns, int start, int length) {
+        byte[] opcodes = expression.opcodes();
+        int[] operands = expression.operands();
+        int[][] stack = this.stack;
+        int size = 0;
+        for (int i = 0; i < opcodes.length; i++) {
+            if (opcodes[i] == Opcode.PUSH) {
+                Arrays.fill(stack[size++], 0, length, operands[i]);
+                continue;
+            }
+            if (opcodes[i] == Opcode.LOAD) {
+                System.arraycopy(columns[operands[i]], start, stack[size++], 0, length);
+                continue;
+            }
+
+            int[] left = stack[size - 2];
+            int[] right = stack[size - 1];
+            size--;
+            switch (opcodes[i]) {
+                case Opcode.ADD -> {
+                    for (int j = 0; j < length; j++) {
+                        left[j] += right[j];
+                    }
+                }
+                case Opcode.SUBTRACT -> {
+                    for (int j = 0; j < length; j++) {
+                        left[j] -= right[j];
+                    }
+                }
+                case Opcode.MULTIPLY -> {
+                    for (int j = 0; j < length; j++) {
+                        left[j] *= right[j];
+                    }
+                }
+                case Opcode.DIVIDE -> {
+                    for (int j = 0; j < length; j++) {
+                        left[j] /= right[j];
+                    }
+                }
+                case Opcode.MIN -> {
+                    for (int j = 0; j < length; j++) {
+                        left[j] = Math.min(left[j], right[j]);
+                    }
+                }
+                case Opcode.MAX -> {
+                    for (int j = 0; j < length; j++) {
+                        left[j] = Math.max(left[j], right[j]);
+                    }
+                }
+                default -> throw new RuntimeException("Unknown opcode " + opcodes[i]);
+            }
+        }
+        return stack[0];
+    }
+
+    private static void checkColumnCount(CompiledExpression expression, int columns) {
+        if (columns < expression.getVariableCount()) {
+            throw new IllegalArgumentException(
+                    "Expected " + expression.getVariableCount() + " columns, got " + columns);
+        }
+    }
+
+    private void ensureStack(int depth) {
+        if (stack.length >= depth) {
+            return;
+        }
+        int[][] grown = Arrays.copyOf(stack, depth);
+        for (int i = stack.length; i < depth; i++) {
+            grown[i] = new int[BLOCK_SIZE];
+        }
+        stack = grown;
+    }
+}
@@ -0,0 +1,137 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.MathContext;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Processes newline-delimited expressions, one result line per input line.
+ * Blank lines give an empty line; lines that fail to parse or evaluate give {@link #ERROR} and are reported
+ * on the error stream with their line number.
+ */
+final class BatchRunner {
+    static final int BUFFER_SIZE = 1 << 20;
+    static final String ERROR = "ERROR";
+
+    enum Output {
+        POSTFIX,
+        VALUE,
+        BOTH;
+
+        static Output parse(String s) {
+            return valueOf(s.toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private final Output output;
+    private final NumericMode mode;
+    private final MathContext context;
+    private final IntEvaluator evaluator = new IntEvaluator();
+    private final int[] noVariables = new int[0];
+
+    BatchRunner(Output output) {
+        this(output, NumericMode.INT, MathContext.DECIMAL128);
+    }
+
+    /**
+     * @param context rounding of {@link NumericMode#BIG_DECIMAL}
+     */
+    BatchRunner(Output output, NumericMode mode, MathContext context) {
+        this.output = output;
+        this.mode = mode;
+        this.context = context;
+    }
+
+    /**
+     * @return number of lines that could not be processed
+     */
+    public long run(ReadableByteChannel input, Writer out, Writer errors) throws IOException {
+        BufferedReader reader = newReader(input);
+        long lineNumber = 0;
+        long failed = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (!process(line, lineNumber, out, errors)) {
+                failed++;
+            }
+        }
+        out.flush();
+        errors.flush();
+        return failed;
+    }
+
+    /**
+     * Non-ASCII bytes are decoded as U+FFFD, so the lexer reports the line instead of the read failing.
+     */
+    static BufferedReader newReader(ReadableByteChannel input) {
+        return new BufferedReader(Channels.newReader(input, StandardCharsets.US_ASCII.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE), BUFFER_SIZE), BUFFER_SIZE);
+    }
+
+    /**
+     * Memory-maps the file and lexes every line directly from the mapped bytes.
+     *
+     * @return number of lines that could not be processed
+     */
+    public long run(Path input, Writer out, Writer errors) throws IOException {
+        long[] failed = {0};
+        MappedLineReader.forEachLine(input, (line, lineNumber) -> {
+            if (!process(line, lineNumber, out, errors)) {
+                failed[0]++;
+            }
+        });
+        out.flush();
+        errors.flush();
+        return failed[0];
+    }
+
+    /**
+     * @return false if the line was malformed
+     */
+    boolean process(CharSequence line, long lineNumber, Appendable out, Appendable errors) throws IOException {
+        if (isBlank(line)) {
+            out.append('\n');
+            return true;
+        }
+        try {
+            CompiledExpression expression = CompiledExpression.compile(line);
+            String value = output == Output.POSTFIX ? null : evaluate(expression);
+            switch (output) {
+                case POSTFIX -> out.append(expression.toString());
+                case VALUE -> out.append(value);
+                case BOTH -> out.append(expression.toString()).append('\t').append(value);
+            }
+            out.append('\n');
+            return true;
+        }
+        catch (RuntimeException e) {
+            out.append(ERROR).append('\n');
+            errors.append("line ").append(Long.toString(lineNumber)).append(": ")
+                    .append(String.valueOf(e.getMessage())).append('\n');
+            return false;
+        }
+    }
+
+    private String evaluate(CompiledExpression expression) {
+        if (mode == NumericMode.INT) {
+            return Integer.toString(expression.evaluate(evaluator, noVariables));
+        }
+        return NumericMode.format(expression.evaluate(mode, context));
+    }
+
+    private static boolean isBlank(CharSequence line) {
+        for (int i = 0; i < line.length(); i++) {
+            if (!Character.isWhitespace(line.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
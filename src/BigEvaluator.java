@@ -0,0 +1,75 @@
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+
+/**
+ * Evaluates postfix programs in arbitrary precision. Every operation allocates its result,
+ * so there is no reusable state and the methods are static.
+ */
+final class BigEvaluator {
+    private BigEvaluator() {
+    }
+
+    /**
+     * Division truncates toward zero, like {@code int} division, and throws {@link ArithmeticException} on zero.
+     */
+    public static BigInteger evaluate(byte[] opcodes, int[] operands, int maxDepth, BigInteger[] vars) {
+        BigInteger[] stack = new BigInteger[maxDepth];
+        int size = 0;
+        for (int i = 0; i < opcodes.length; i++) {
+            switch (opcodes[i]) {
+                case Opcode.PUSH -> stack[size++] = BigInteger.valueOf(operands[i]);
+                case Opcode.LOAD -> stack[size++] = vars[operands[i]];
+                default -> {
+                    size--;
+                    stack[size - 1] = apply(opcodes[i], stack[size - 1], stack[size]);
+                }
+            }
+        }
+        return stack[0];
+    }
+
+    /**
+     * Every operation is rounded to {@code context}; division throws {@link ArithmeticException} on zero.
+     */
+    public static BigDecimal evaluate(byte[] opcodes, int[] operands, int maxDepth,
+                                      MathContext context, BigDecimal[] vars) {
+        BigDecimal[] stack = new BigDecimal[maxDepth];
+        int size = 0;
+        for (int i = 0; i < opcodes.length; i++) {
+            switch (opcodes[i]) {
+                case Opcode.PUSH -> stack[size++] = BigDecimal.valueOf(operands[i]);
+                case Opcode.LOAD -> stack[size++] = vars[operands[i]];
+                default -> {
+                    size--;
+                    stack[size - 1] = apply(opcodes[i], stack[size - 1], stack[size], context);
+                }
+            }
+        }
+        return stack[0];
+    }
+
+    static BigInteger apply(byte opcode, BigInteger left, BigInteger right) {
+        return switch (opcode) {
+            case Opcode.ADD -> left.add(right);
+            case Opcode.SUBTRACT -> left.subtract(right);
+            case Opcode.MULTIPLY -> left.multiply(right);
+            case Opcode.DIVIDE -> left.divide(right);
+            case Opcode.MIN -> left.min(right);
+            case Opcode.MAX -> left.max(right);
+            default -> throw new RuntimeException("Unknown opcode " + opcode);
+        };
+    }
+
+    static BigDecimal apply(byte opcode, BigDecimal left, BigDecimal right, MathContext context) {
+        return switch (opcode) {
+            case Opcode.ADD -> left.add(right, context);
+            case Opcode.SUBTRACT -> left.subtract(right, context);
+            case Opcode.MULTIPLY -> left.multiply(right, context);
+            case Opcode.DIVIDE -> left.divide(right, context);
+            case Opcode.MIN -> left.min(right);
+            case Opcode.MAX -> left.max(right);
+            default -> throw new RuntimeException("Unknown opcode " + opcode);
+        };
+    }
+}
@@ -0,0 +1,271 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Turns a postfix program into a hidden class implementing {@link IProgram} whose {@code evaluate}
+ * is straight-line bytecode, so the JIT can treat it like handwritten Java.
+ * Hidden classes are defined without {@code STRONG}, so they are unloaded together with their instances.
+ */
+final class BytecodeCompiler {
+    private static final String CLASS_NAME = "GeneratedProgram";
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    private static final int ICONST_0 = 0x03;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC_W = 0x13;
+    private static final int ALOAD_0 = 0x2a;
+    private static final int ALOAD_1 = 0x2b;
+    private static final int IALOAD = 0x2e;
+    private static final int IADD = 0x60;
+    private static final int ISUB = 0x64;
+    private static final int IMUL = 0x68;
+    private static final int IDIV = 0x6c;
+    private static final int IRETURN = 0xac;
+    private static final int RETURN = 0xb1;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int INVOKESTATIC = 0xb8;
+    private static final int ARRAYLENGTH = 0xbe;
+
+    /**
+     * HotSpot interprets methods with more bytecode than this ({@code -XX:HugeMethodLimit},
+     * {@code -XX:+DontCompileHugeMethods}), which is slower than {@link IntEvaluator}; well below the 65535 byte
+     * class-file limit.
+     */
+    static final int HUGE_METHOD_LIMIT = 8000;
+
+    private BytecodeCompiler() {
+    }
+
+    /**
+     * @param polish postfix tokens, as returned by {@link ShutingYard#process}
+     * @return generated program, or an interpreting one if the class could not be generated
+     * or would be too large for the JIT to compile
+     */
+    public static IProgram compile(IList<Token> polish) {
+        return compile(CompiledExpression.of(polish));
+    }
+
+    public static IProgram compile(CompiledExpression expression) {
+        try {
+            byte[] bytes = generate(expression);
+            Class<?> generated = MethodHandles.lookup().defineHiddenClass(bytes, true).lookupClass();
+            return (IProgram) generated.getDeclaredConstructor().newInstance();
+        }
+        catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+            return expression::evaluate;
+        }
+    }
+
+    static byte[] generate(CompiledExpression expression) {
+        ConstantPool pool = new ConstantPool();
+        int thisClass = pool.classRef(CLASS_NAME);
+        int superClass = pool.classRef("java/lang/Object");
+        int programInterface = pool.classRef(IProgram.class.getName());
+        int objectInit = pool.methodRef("java/lang/Object", "<init>", "()V");
+        int init = pool.utf8("<init>");
+        int initDescriptor = pool.utf8("()V");
+        int evaluate = pool.utf8("evaluate");
+        int evaluateDescriptor = pool.utf8("([I)I");
+        int code = pool.utf8("Code");
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        // a call rather than a branch, which would need a stack map frame
+        body.write(ALOAD_1);
+        body.write(ARRAYLENGTH);
+        pushConstant(body, pool, expression.getVariableCount());
+        invokeStatic(body, pool.methodRef(CompiledExpression.class.getName(), "checkVariables", "(II)V"));
+        byte[] opcodes = expression.opcodes();
+        int[] operands = expression.operands();
+        for (int i = 0; i < opcodes.length; i++) {
+            switch (opcodes[i]) {
+                case Opcode.PUSH -> pushConstant(body, pool, operands[i]);
+                case Opcode.LOAD -> {
+                    body.write(ALOAD_1);
+                    pushConstant(body, pool, operands[i]);
+                    body.write(IALOAD);
+                }
+                case Opcode.ADD -> body.write(IADD);
+                case Opcode.SUBTRACT -> body.write(ISUB);
+                case Opcode.MULTIPLY -> body.write(IMUL);
+                case Opcode.DIVIDE -> body.write(IDIV);
+                case Opcode.MIN -> invokeStatic(body, pool.methodRef("java/lang/Math", "min", "(II)I"));
+                case Opcode.MAX -> invokeStatic(body, pool.methodRef("java/lang/Math", "max", "(II)I"));
+                default -> throw new RuntimeException("Unknown opcode " + opcodes[i]);
+            }
+        }
+        body.write(IRETURN);
+        if (body.size() > HUGE_METHOD_LIMIT) {
+            throw new RuntimeException("Expression is too large to be compiled by the JIT");
+        }
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(52);
+            pool.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(1);
+            out.writeShort(programInterface);
+            out.writeShort(0);  // fields
+            out.writeShort(2);  // methods
+
+            byte[] initCode = {
+                    (byte) ALOAD_0,
+                    (byte) INVOKESPECIAL, (byte) (objectInit >> 8), (byte) objectInit,
+                    (byte) RETURN
+            };
+            writeMethod(out, init, initDescriptor, code, 1, 1, initCode);
+            // a load briefly holds the array and the index on top of the values already pushed
+            writeMethod(out, evaluate, evaluateDescriptor, code,
+                    expression.getMaxDepth() + 1, 2, body.toByteArray());
+
+            out.writeShort(0);  // attributes
+            return bytes.toByteArray();
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void pushConstant(ByteArrayOutputStream body, ConstantPool pool, int value) {
+        if (value >= -1 && value <= 5) {
+            body.write(ICONST_0 + value);
+        }
+        else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            body.write(BIPUSH);
+            body.write(value);
+        }
+        else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            body.write(SIPUSH);
+            body.write(value >> 8);
+            body.write(value);
+        }
+        else {
+            int index = pool.integer(value);
+            body.write(LDC_W);
+            body.write(index >> 8);
+            body.write(index);
+        }
+    }
+
+    private static void invokeStatic(ByteArrayOutputStream body, int method) {
+        body.write(INVOKESTATIC);
+        body.write(method >> 8);
+        body.write(method);
+    }
+
+    private static void writeMethod(DataOutputStream out, int name, int descriptor, int codeAttribute,
+                                    int maxStack, int maxLocals, byte[] code) throws IOException {
+        out.writeShort(ACC_PUBLIC);
+        out.writeShort(name);
+        out.writeShort(descriptor);
+        out.writeShort(1);
+        out.writeShort(codeAttribute);
+        out.writeInt(2 + 2 + 4 + code.length + 2 + 2);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.length);
+        out.write(code);
+        out.writeShort(0);  // exception table
+        out.writeShort(0);  // attributes
+    }
+
+    private static final class ConstantPool {
+        private static final int CONSTANT_UTF8 = 1;
+        private static final int CONSTANT_INTEGER = 3;
+        private static final int CONSTANT_CLASS = 7;
+        private static final int CONSTANT_METHODREF = 10;
+        private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<String, Integer> entries = new HashMap<>();
+        private int count = 1;
+
+        int utf8(String s) {
+            Integer index = entries.get("U" + s);
+            if (index != null) {
+                return index;
+            }
+            try {
+                out.writeByte(CONSTANT_UTF8);
+                out.writeUTF(s);
+            }
+            catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return register("U" + s);
+        }
+
+        int integer(int value) {
+            Integer index = entries.get("I" + value);
+            if (index != null) {
+                return index;
+            }
+            write(CONSTANT_INTEGER, value >>> 16, value & 0xffff);
+            return register("I" + value);
+        }
+
+        int classRef(String name) {
+            Integer index = entries.get("C" + name);
+            if (index != null) {
+                return index;
+            }
+            int nameIndex = utf8(name);
+            write(CONSTANT_CLASS, nameIndex);
+            return register("C" + name);
+        }
+
+        int methodRef(String owner, String name, String descriptor) {
+            String key = "M" + owner + "." + name + descriptor;
+            Integer index = entries.get(key);
+            if (index != null) {
+                return index;
+            }
+            int ownerIndex = classRef(owner);
+            int nameIndex = utf8(name);
+            int descriptorIndex = utf8(descriptor);
+            write(CONSTANT_NAME_AND_TYPE, nameIndex, descriptorIndex);
+            int nameAndType = register("N" + name + descriptor);
+            write(CONSTANT_METHODREF, ownerIndex, nameAndType);
+            return register(key);
+        }
+
+        void writeTo(DataOutputStream target) throws IOException {
+            target.writeShort(count);
+            bytes.writeTo(target);
+        }
+
+        private void write(int tag, int... shorts) {
+            try {
+                out.writeByte(tag);
+                for (int s : shorts) {
+                    out.writeShort(s);
+                }
+            }
+            catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        private int register(String key) {
+            if (count > 0xffff - 1) {
+                throw new RuntimeException("Constant pool overflow");
+            }
+            entries.put(key, count);
+            return count++;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * Variant of {@link IntEvaluator} that detects {@code int} overflow in the operations selected by a mask,
+ * see {@link RangeAnalysis}, and either throws {@link ArithmeticException} or saturates to the int range.
+ * Operations outside the mask wrap around as usual. Not thread-safe: keep one instance per thread.
+ */
+final class CheckedEvaluator {
+    private int[] stack = new int[16];
+
+    /**
+     * @param checked  for each instruction, whether it must be checked for overflow
+     * @param saturate whether to clamp overflowing results instead of throwing
+     */
+    public int evaluate(byte[] opcodes, int[] operands, boolean[] checked, int maxDepth,
+                        int[] vars, boolean saturate) {
+        if (stack.length < maxDepth) {
+            stack = new int[Math.max(maxDepth, stack.length * 2)];
+        }
+        int[] stack = this.stack;
+        int size = 0;
+        for (int i = 0; i < opcodes.length; i++) {
+            byte opcode = opcodes[i];
+            switch (opcode) {
+                case Opcode.PUSH -> stack[size++] = operands[i];
+                case Opcode.LOAD -> stack[size++] = vars[operands[i]];
+                default -> {
+                    size--;
+                    int left = stack[size - 1];
+                    int right = stack[size];
+                    if (!checked[i]) {
+                        stack[size - 1] = IntEvaluator.apply(opcode, left, right);
+                    }
+                    else if (saturate) {
+                        stack[size - 1] = saturating(opcode, left, right);
+                    }
+                    else {
+                        stack[size - 1] = exact(opcode, left, right);
+                    }
+                }
+            }
+        }
+        return stack[0];
+    }
+
+    static int exact(byte opcode, int left, int right) {
+        return switch (opcode) {
+            case Opcode.ADD -> Math.addExact(left, right);
+            case Opcode.SUBTRACT -> Math.subtractExact(left, right);
+            case Opcode.MULTIPLY -> Math.multiplyExact(left, right);
+            case Opcode.DIVIDE -> {
+                if (left == Integer.MIN_VALUE && right == -1) {
+                    throw new ArithmeticException("integer overflow");
+                }
+                yield left / right;
+            }
+            default -> IntEvaluator.apply(opcode, left, right);
+        };
+    }
+
+    static int saturating(byte opcode, int left, int right) {
+        long result = switch (opcode) {
+            case Opcode.ADD -> (long) left + right;
+            case Opcode.SUBTRACT -> (long) left - right;
+            case Opcode.MULTIPLY -> (long) left * right;
+            case Opcode.DIVIDE -> (long) left / right;
+            default -> IntEvaluator.apply(opcode, left, right);
+        };
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, result));
+    }
+}
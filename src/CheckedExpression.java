@@ -0,0 +1,121 @@
+import java.util.Arrays;
+
+/**
+ * {@link CompiledExpression} evaluated with {@code int} overflow detection. Range analysis over the declared
+ * range of each variable decides, per operation, whether overflow is possible at all; only those operations
+ * are checked, and when there are none, evaluation is exactly the unchecked fast path.
+ * Instances are safe to share between threads.
+ */
+public final class CheckedExpression {
+    public enum OverflowPolicy {
+        /**
+         * Throw {@link ArithmeticException}.
+         */
+        THROW,
+        /**
+         * Clamp the result to {@link Integer#MIN_VALUE} or {@link Integer#MAX_VALUE}.
+         */
+        SATURATE
+    }
+
+    private static final ThreadLocal<CheckedEvaluator> EVALUATOR = ThreadLocal.withInitial(CheckedEvaluator::new);
+    private static final int[] NO_VARIABLES = new int[0];
+
+    private final CompiledExpression expression;
+    private final OverflowPolicy policy;
+    private final int[] minimums;
+    private final int[] maximums;
+    private final boolean[] checked;
+    private final int checkedCount;
+
+    private CheckedExpression(CompiledExpression expression, OverflowPolicy policy, int[] minimums, int[] maximums) {
+        this.expression = expression;
+        this.policy = policy;
+        this.minimums = minimums;
+        this.maximums = maximums;
+        this.checked = RangeAnalysis.overflowMask(expression.opcodes(), expression.operands(),
+                expression.getMaxDepth(), minimums, maximums);
+        int count = 0;
+        for (boolean check : checked) {
+            if (check) {
+                count++;
+            }
+        }
+        this.checkedCount = count;
+    }
+
+    /**
+     * Assumes every variable may take any int value.
+     */
+    public static CheckedExpression of(CompiledExpression expression, OverflowPolicy policy) {
+        int[] minimums = new int[expression.getVariableCount()];
+        int[] maximums = new int[minimums.length];
+        Arrays.fill(minimums, Integer.MIN_VALUE);
+        Arrays.fill(maximums, Integer.MAX_VALUE);
+        return new CheckedExpression(expression, policy, minimums, maximums);
+    }
+
+    /**
+     * @param minimums smallest value of each variable, indexed by slot
+     * @param maximums largest value of each variable, indexed by slot
+     */
+    public static CheckedExpression of(CompiledExpression expression, OverflowPolicy policy,
+                                       int[] minimums, int[] maximums) {
+        if (minimums.length != expression.getVariableCount() || maximums.length != minimums.length) {
+            throw new IllegalArgumentException("Expected ranges of " + expression.getVariableCount() + " variables");
+        }
+        for (int i = 0; i < minimums.length; i++) {
+            if (minimums[i] > maximums[i]) {
+                throw new IllegalArgumentException("Empty range of variable " + expression.getVariables()[i]);
+            }
+        }
+        return new CheckedExpression(expression, policy, minimums.clone(), maximums.clone());
+    }
+
+    public int evaluate() {
+        return evaluate(NO_VARIABLES);
+    }
+
+    /**
+     * @param vars variable values indexed by slot, each within its declared range
+     * @throws ArithmeticException on overflow under {@link OverflowPolicy#THROW}, or on division by zero
+     */
+    public int evaluate(int[] vars) {
+        for (int i = 0; i < minimums.length && i < vars.length; i++) {
+            if (vars[i] < minimums[i] || vars[i] > maximums[i]) {
+                throw new IllegalArgumentException("Variable " + expression.getVariables()[i] + " = " + vars[i]
+                        + " is outside its declared range [" + minimums[i] + ", " + maximums[i] + "]");
+            }
+        }
+        if (checkedCount == 0) {
+            return expression.evaluate(vars);
+        }
+        if (vars.length < minimums.length) {
+            throw new IllegalArgumentException("Expected " + minimums.length + " variables, got " + vars.length);
+        }
+        return EVALUATOR.get().evaluate(expression.opcodes(), expression.operands(), checked,
+                expression.getMaxDepth(), vars, policy == OverflowPolicy.SATURATE);
+    }
+
+    /**
+     * @return false if range analysis proved that no operation can overflow
+     */
+    public boolean isOverflowPossible() {
+        return checkedCount != 0;
+    }
+
+    /**
+     * @return number of operations that are checked for overflow
+     */
+    public int getCheckedCount() {
+        return checkedCount;
+    }
+
+    public OverflowPolicy getPolicy() {
+        return policy;
+    }
+
+    public CompiledExpression getExpression() {
+        return expression;
+    }
+}
@@ -0,0 +1,274 @@
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable postfix program produced once by the shunting-yard pass and evaluated any number of times.
+ * Variables are resolved to integer slots at compile time, so evaluation takes their values as an array.
+ * Instances are safe to share between threads.
+ */
+public final class CompiledExpression {
+    private static final ThreadLocal<IntEvaluator> EVALUATOR = ThreadLocal.withInitial(IntEvaluator::new);
+    private static final ThreadLocal<LongEvaluator> LONG_EVALUATOR = ThreadLocal.withInitial(LongEvaluator::new);
+    private static final ThreadLocal<DoubleEvaluator> DOUBLE_EVALUATOR =
+            ThreadLocal.withInitial(DoubleEvaluator::new);
+    private static final ThreadLocal<BatchEvaluator> BATCH_EVALUATOR = ThreadLocal.withInitial(BatchEvaluator::new);
+    private static final int[] NO_VARIABLES = new int[0];
+
+    private final Token[] program;
+    private final byte[] opcodes;
+    private final int[] operands;
+    private final int maxDepth;
+    private final String[] variables;
+
+    private CompiledExpression(Token[] program, byte[] opcodes, int[] operands, int maxDepth, String[] variables) {
+        this.program = program;
+        this.opcodes = opcodes;
+        this.operands = operands;
+        this.maxDepth = maxDepth;
+        this.variables = variables;
+    }
+
+    public static CompiledExpression compile(CharSequence source) {
+        return of(ShutingYard.process(ShutingYard.parse(source)));
+    }
+
+    /**
+     * @param variables names of the allowed variables; the slot of each is its index in this array
+     */
+    public static CompiledExpression compile(CharSequence source, String... variables) {
+        return of(ShutingYard.process(ShutingYard.parse(source)), variables);
+    }
+
+    /**
+     * Assigns variable slots in order of first appearance.
+     *
+     * @param polish postfix tokens, as returned by {@link ShutingYard#process}
+     */
+    public static CompiledExpression of(IList<Token> polish) {
+        return of(polish, null);
+    }
+
+    /**
+     * @param polish    postfix tokens, as returned by {@link ShutingYard#process}
+     * @param variables names of the allowed variables in slot order,
+     *                  or null to assign slots in order of first appearance
+     */
+    public static CompiledExpression of(IList<Token> polish, String[] variables) {
+        Map<String, Integer> slots = new HashMap<>();
+        if (variables != null) {
+            for (String name : variables) {
+                if (slots.putIfAbsent(name, slots.size()) != null) {
+                    throw new RuntimeException("Duplicate variable " + name);
+                }
+            }
+        }
+
+        Token[] program = new Token[polish.size()];
+        byte[] opcodes = new byte[program.length];
+        int[] operands = new int[program.length];
+        int depth = 0;
+        int maxDepth = 0;
+        int i = 0;
+        for (Token token : polish) {
+            if (token.getType() == TokenType.NUMBER) {
+                opcodes[i] = Opcode.PUSH;
+                operands[i] = ((TokenNumber<?>) token).getValue().intValue();
+                depth++;
+            }
+            else if (token.getType() == TokenType.VARIABLE) {
+                String name = ((TokenVariable) token).getName();
+                Integer slot = slots.get(name);
+                if (slot == null) {
+                    if (variables != null) {
+                        throw new RuntimeException("Unknown variable " + name);
+                    }
+                    slot = slots.size();
+                    slots.put(name, slot);
+                }
+                opcodes[i] = Opcode.LOAD;
+                operands[i] = slot;
+                depth++;
+            }
+            else if (token instanceof IComputer<?, ?>) {
+                IComputer<?, ?> computer = (IComputer<?, ?>) token;
+                if (depth < computer.argsNumber()) {
+                    throw new RuntimeException("Malformed expression");
+                }
+                opcodes[i] = computer.opcode();
+                depth -= computer.argsNumber() - 1;
+            }
+            else {
+                throw new RuntimeException("Unexpected token in postfix program: " + token);
+            }
+            maxDepth = Math.max(maxDepth, depth);
+            program[i++] = token;
+        }
+        if (depth != 1) {
+            throw new RuntimeException("Malformed expression");
+        }
+        String[] names = new String[slots.size()];
+        for (Map.Entry<String, Integer> slot : slots.entrySet()) {
+            names[slot.getValue()] = slot.getKey();
+        }
+        return new CompiledExpression(program, opcodes, operands, maxDepth, names);
+    }
+
+    public int evaluate() {
+        return evaluate(NO_VARIABLES);
+    }
+
+    /**
+     * @param vars variable values indexed by slot, see {@link #getVariables()}
+     */
+    public int evaluate(int[] vars) {
+        return evaluate(EVALUATOR.get(), vars);
+    }
+
+    /**
+     * Evaluates on the caller's evaluator, which must not be used concurrently by other threads.
+     */
+    public int evaluate(IntEvaluator evaluator, int[] vars) {
+        checkVariables(vars.length);
+        PipelineMetrics metrics = PipelineMetrics.active();
+        if (metrics == null) {
+            return evaluator.evaluate(opcodes, operands, maxDepth, vars);
+        }
+        long start = System.nanoTime();
+        int result = evaluator.evaluate(opcodes, operands, maxDepth, vars);
+        metrics.evaluate().record(System.nanoTime() - start, opcodes.length, maxDepth);
+        return result;
+    }
+
+    /**
+     * Evaluates in {@link NumericMode#LONG}.
+     */
+    public long evaluate(long[] vars) {
+        checkVariables(vars.length);
+        return LONG_EVALUATOR.get().evaluate(opcodes, operands, maxDepth, vars);
+    }
+
+    /**
+     * Evaluates in {@link NumericMode#DOUBLE}.
+     */
+    public double evaluate(double[] vars) {
+        checkVariables(vars.length);
+        return DOUBLE_EVALUATOR.get().evaluate(opcodes, operands, maxDepth, vars);
+    }
+
+    /**
+     * Evaluates in {@link NumericMode#BIG_INTEGER}.
+     */
+    public BigInteger evaluate(BigInteger[] vars) {
+        checkVariables(vars.length);
+        return BigEvaluator.evaluate(opcodes, operands, maxDepth, vars);
+    }
+
+    /**
+     * Evaluates in {@link NumericMode#BIG_DECIMAL}, rounding every operation to {@code context}.
+     */
+    public BigDecimal evaluate(BigDecimal[] vars, MathContext context) {
+        checkVariables(vars.length);
+        return BigEvaluator.evaluate(opcodes, operands, maxDepth, context, vars);
+    }
+
+    /**
+     * Evaluates an expression without variables in any mode. The typed overloads avoid boxing the result.
+     *
+     * @param context rounding of {@link NumericMode#BIG_DECIMAL}, ignored by the other modes
+     */
+    public Number evaluate(NumericMode mode, MathContext context) {
+        return switch (mode) {
+            case INT -> evaluate(NO_VARIABLES);
+            case LONG -> evaluate(new long[0]);
+            case DOUBLE -> evaluate(new double[0]);
+            case BIG_INTEGER -> evaluate(new BigInteger[0]);
+            case BIG_DECIMAL -> evaluate(new BigDecimal[0], context);
+        };
+    }
+
+    private void checkVariables(int count) {
+        checkVariables(count, variables.length);
+    }
+
+    /**
+     * Also called first by every program generated by {@link BytecodeCompiler}, so both fail alike.
+     */
+    static void checkVariables(int count, int expected) {
+        if (count < expected) {
+            throw new IllegalArgumentException("Expected " + expected + " variables, got " + count);
+        }
+    }
+
+    /**
+     * @return a fresh copy of the postfix program
+     */
+    public IList<Token> getProgram() {
+        IList<Token> result = new LinkedList<>();
+        for (Token token : program) {
+            result.putBack(token);
+        }
+        return result;
+    }
+
+    /**
+     * Evaluates the program over every row, one block of rows at a time,
+     * see {@link BatchEvaluator#evaluate(CompiledExpression, int[][], int[])}.
+     */
+    public void evaluateBatch(int[][] columns, int[] out) {
+        BATCH_EVALUATOR.get().evaluate(this, columns, out);
+    }
+
+    byte[] opcodes() {
+        return opcodes;
+    }
+
+    int[] operands() {
+        return operands;
+    }
+
+    public int size() {
+        return program.length;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public int getVariableCount() {
+        return variables.length;
+    }
+
+    /**
+     * @return variable names indexed by slot
+     */
+    public String[] getVariables() {
+        return variables.clone();
+    }
+
+    /**
+     * @return slot of the variable, or -1 if the expression does not use it
+     */
+    public int slotOf(String name) {
+        for (int i = 0; i < variables.length; i++) {
+            if (variables[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (Token token : program) {
+            if (builder.length() != 0) {
+                builder.append(' ');
+            }
+            builder.append(token);
+        }
+        return builder.toString();
+    }
+}
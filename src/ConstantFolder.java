@@ -0,0 +1,143 @@
+/**
+ * Optimization pass over postfix programs: folds constant subexpressions into single numbers
+ * and removes identities ({@code x + 0}, {@code 0 + x}, {@code x - 0}, {@code x * 1}, {@code 1 * x},
+ * {@code x / 1}, {@code min ( x , x )}, {@code max ( x , x )}).
+ * Divisions by a constant zero are never folded, so they still fail at evaluation time.
+ */
+final class ConstantFolder {
+    private long removed = 0;
+
+    /**
+     * @param polish postfix tokens, as returned by {@link ShutingYard#process}
+     * @return equivalent, possibly shorter, postfix program
+     */
+    public IList<Token> fold(IList<Token> polish) {
+        Token[] output = new Token[polish.size()];
+        int length = 0;
+        // start index in output of each subexpression on the evaluation stack
+        int[] starts = new int[polish.size()];
+        int depth = 0;
+
+        for (Token token : polish) {
+            if (!(token instanceof IComputer<?, ?>)) {
+                starts[depth++] = length;
+                output[length++] = token;
+                continue;
+            }
+
+            IComputer<?, ?> computer = (IComputer<?, ?>) token;
+            if (depth < computer.argsNumber()) {
+                throw new RuntimeException("Malformed expression");
+            }
+            if (computer.argsNumber() != 2) {
+                depth -= computer.argsNumber();
+                output[length++] = token;
+                depth++;
+                continue;
+            }
+
+            int leftStart = starts[depth - 2];
+            int rightStart = starts[depth - 1];
+            depth -= 2;
+            Integer left = constant(output, leftStart, rightStart);
+            Integer right = constant(output, rightStart, length);
+            byte opcode = computer.opcode();
+
+            if (left != null && right != null && !(opcode == Opcode.DIVIDE && right == 0)) {
+                length = leftStart;
+                output[length++] = TokenNumber.of(compute(token, left, right));
+            }
+            else if (isRightIdentity(opcode, right)
+                    || ((opcode == Opcode.MIN || opcode == Opcode.MAX)
+                        && same(output, leftStart, rightStart, length))) {
+                length = rightStart;
+            }
+            else if (isLeftIdentity(opcode, left)) {
+                System.arraycopy(output, rightStart, output, leftStart, length - rightStart);
+                length -= rightStart - leftStart;
+            }
+            else {
+                output[length++] = token;
+            }
+            starts[depth++] = leftStart;
+        }
+
+        removed += polish.size() - length;
+        IList<Token> result = new ArrayDeque<>(length);
+        for (int i = 0; i < length; i++) {
+            result.putBack(output[i]);
+        }
+        return result;
+    }
+
+    /**
+     * @return total number of tokens removed by all {@link #fold} calls on this instance
+     */
+    public long getRemovedCount() {
+        return removed;
+    }
+
+    private static boolean isRightIdentity(byte opcode, Integer right) {
+        if (right == null) {
+            return false;
+        }
+        return switch (opcode) {
+            case Opcode.ADD, Opcode.SUBTRACT -> right == 0;
+            case Opcode.MULTIPLY, Opcode.DIVIDE -> right == 1;
+            default -> false;
+        };
+    }
+
+    private static boolean isLeftIdentity(byte opcode, Integer left) {
+        if (left == null) {
+            return false;
+        }
+        return switch (opcode) {
+            case Opcode.ADD -> left == 0;
+            case Opcode.MULTIPLY -> left == 1;
+            default -> false;
+        };
+    }
+
+    private static int compute(Token token, int left, int right) {
+        @SuppressWarnings("unchecked")
+        IComputer<Integer, Integer> computer = (IComputer<Integer, Integer>) token;
+        IList<Integer> args = new ArrayDeque<>(2);
+        args.putBack(left);
+        args.putBack(right);
+        return computer.compute(args);
+    }
+
+    /**
+     * @return value of the subexpression {@code output[start, end)} if it is a single number
+     */
+    private static Integer constant(Token[] output, int start, int end) {
+        if (end - start != 1 || output[start].getType() != TokenType.NUMBER) {
+            return null;
+        }
+        return ((TokenNumber<?>) output[start]).getValue().intValue();
+    }
+
+    private static boolean same(Token[] output, int leftStart, int rightStart, int end) {
+        if (rightStart - leftStart != end - rightStart) {
+            return false;
+        }
+        for (int i = 0; i < rightStart - leftStart; i++) {
+            if (!sameToken(output[leftStart + i], output[rightStart + i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameToken(Token a, Token b) {
+        if (a.getType() != b.getType()) {
+            return false;
+        }
+        return switch (a.getType()) {
+            case NUMBER -> ((TokenNumber<?>) a).getValue().equals(((TokenNumber<?>) b).getValue());
+            case VARIABLE -> ((TokenVariable) a).getName().equals(((TokenVariable) b).getName());
+            default -> a == b;
+        };
+    }
+}
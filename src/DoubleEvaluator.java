@@ -0,0 +1,42 @@
+/**
+ * {@code double} counterpart of {@link IntEvaluator}, over a reusable {@code double[]} operand stack.
+ * Division follows IEEE 754, so dividing by zero yields an infinity or NaN instead of throwing.
+ * Not thread-safe: keep one instance per thread.
+ */
+final class DoubleEvaluator {
+    private double[] stack = new double[16];
+
+    /**
+     * @param vars variable values indexed by slot, read by {@link Opcode#LOAD}
+     */
+    public double evaluate(byte[] opcodes, int[] operands, int maxDepth, double[] vars) {
+        if (stack.length < maxDepth) {
+            stack = new double[Math.max(maxDepth, stack.length * 2)];
+        }
+        double[] stack = this.stack;
+        int size = 0;
+        for (int i = 0; i < opcodes.length; i++) {
+            switch (opcodes[i]) {
+                case Opcode.PUSH -> stack[size++] = operands[i];
+                case Opcode.LOAD -> stack[size++] = vars[operands[i]];
+                default -> {
+                    size--;
+                    stack[size - 1] = apply(opcodes[i], stack[size - 1], stack[size]);
+                }
+            }
+        }
+        return stack[0];
+    }
+
+    static double apply(byte opcode, double left, double right) {
+        return switch (opcode) {
+            case Opcode.ADD -> left + right;
+            case Opcode.SUBTRACT -> left - right;
+            case Opcode.MULTIPLY -> left * right;
+            case Opcode.DIVIDE -> left / right;
+            case Opcode.MIN -> Math.min(left, right);
+            case Opcode.MAX -> Math.max(left, right);
+            default -> throw new RuntimeException("Unknown opcode " + opcode);
+        };
+    }
+}
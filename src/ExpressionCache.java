@@ -0,0 +1,225 @@
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded concurrent cache of compiled expressions keyed by source text with collapsed whitespace.
+ * Each key is compiled by the first thread that misses on it; other threads asking for the same key
+ * wait for that result, while lookups of other keys proceed without blocking.
+ * Eviction is sampled: each victim is the coldest of a few random loaded entries, so it costs the same
+ * whatever the cache size, and is exact while the cache holds no more entries than the sample.
+ */
+public final class ExpressionCache {
+    public enum EvictionPolicy {
+        LRU,
+        LFU
+    }
+
+    private static final int SAMPLE_SIZE = 8;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final int maxEntries;
+    private final long maxWeight;
+    private final EvictionPolicy policy;
+
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicLong weight = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final Object evictionLock = new Object();
+    // loaded entries, the only ones eviction may pick, guarded by evictionLock
+    private Entry[] resident = new Entry[16];
+    private int residentCount = 0;
+
+    /**
+     * @param maxEntries maximum number of cached expressions
+     * @param maxWeight  maximum total size of cached postfix programs, in tokens
+     */
+    public ExpressionCache(int maxEntries, long maxWeight, EvictionPolicy policy) {
+        if (maxEntries <= 0 || maxWeight <= 0) {
+            throw new IllegalArgumentException("Cache bounds must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.policy = policy;
+    }
+
+    public CompiledExpression get(CharSequence source) {
+        String key = normalize(source);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            Entry created = new Entry(key);
+            entry = entries.putIfAbsent(key, created);
+            if (entry == null) {
+                misses.increment();
+                return load(key, created);
+            }
+        }
+        hits.increment();
+        entry.touch(clock.incrementAndGet());
+        return entry.join();
+    }
+
+    private CompiledExpression load(String key, Entry entry) {
+        CompiledExpression compiled;
+        try {
+            compiled = CompiledExpression.compile(key);
+        }
+        catch (RuntimeException e) {
+            entries.remove(key, entry);
+            entry.value.completeExceptionally(e);
+            throw e;
+        }
+        entry.weight = compiled.size();
+        entry.touch(clock.incrementAndGet());
+        entry.value.complete(compiled);
+        weight.addAndGet(entry.weight);
+        admit(entry);
+        return compiled;
+    }
+
+    /**
+     * Makes a loaded entry evictable, then evicts until the cache is within its bounds.
+     */
+    private void admit(Entry entry) {
+        synchronized (evictionLock) {
+            if (residentCount == resident.length) {
+                resident = Arrays.copyOf(resident, residentCount * 2);
+            }
+            entry.index = residentCount;
+            resident[residentCount++] = entry;
+            while ((entries.size() > maxEntries || weight.get() > maxWeight) && residentCount != 0) {
+                Entry victim = sampleVictim();
+                removeResident(victim);
+                if (entries.remove(victim.key, victim)) {
+                    weight.addAndGet(-victim.weight);
+                    evictions.increment();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the coldest of {@link #SAMPLE_SIZE} random resident entries, or of all of them if there are fewer
+     */
+    private Entry sampleVictim() {
+        boolean sampled = residentCount > SAMPLE_SIZE;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Entry victim = null;
+        for (int i = 0; i < Math.min(residentCount, SAMPLE_SIZE); i++) {
+            Entry candidate = resident[sampled ? random.nextInt(residentCount) : i];
+            if (victim == null || candidate.isColderThan(victim, policy)) {
+                victim = candidate;
+            }
+        }
+        return victim;
+    }
+
+    private void removeResident(Entry entry) {
+        Entry last = resident[--residentCount];
+        resident[entry.index] = last;
+        last.index = entry.index;
+        resident[residentCount] = null;
+    }
+
+    /**
+     * @return source with leading and trailing whitespace removed and inner runs collapsed to one space
+     */
+    static String normalize(CharSequence source) {
+        StringBuilder builder = new StringBuilder(source.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < source.length(); i++) {
+            char c = source.charAt(i);
+            if (Character.isWhitespace(c)) {
+                pendingSpace = builder.length() != 0;
+            }
+            else {
+                if (pendingSpace) {
+                    builder.append(' ');
+                    pendingSpace = false;
+                }
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getWeight() {
+        return weight.get();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public void clear() {
+        synchronized (evictionLock) {
+            for (int i = 0; i < residentCount; i++) {
+                if (entries.remove(resident[i].key, resident[i])) {
+                    weight.addAndGet(-resident[i].weight);
+                }
+                resident[i] = null;
+            }
+            residentCount = 0;
+        }
+    }
+
+    private static final class Entry {
+        final String key;
+        final CompletableFuture<CompiledExpression> value = new CompletableFuture<>();
+        final LongAdder frequency = new LongAdder();
+        volatile long lastAccess;
+        int weight;
+        int index = -1;
+
+        Entry(String key) {
+            this.key = key;
+        }
+
+        void touch(long time) {
+            lastAccess = time;
+            frequency.increment();
+        }
+
+        boolean isColderThan(Entry other, EvictionPolicy policy) {
+            if (policy == EvictionPolicy.LFU) {
+                long frequency = this.frequency.sum();
+                long otherFrequency = other.frequency.sum();
+                if (frequency != otherFrequency) {
+                    return frequency < otherFrequency;
+                }
+            }
+            return lastAccess < other.lastAccess;
+        }
+
+        CompiledExpression join() {
+            try {
+                return value.join();
+            }
+            catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,445 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Expression tree built from a {@link CompiledExpression}, for evaluating independent subtrees in parallel.
+ * Every node covers a contiguous range of the postfix program, so subtrees in which no run of children reaches the
+ * threshold are evaluated sequentially straight from the program and only the others fork on a {@link ForkJoinPool}.
+ * Results are identical to {@link CompiledExpression#evaluate(int[])}.
+ * <p>
+ * Optionally, chains of one associative operation ({@code +}, {@code *}, {@code min}, {@code max}) are flattened
+ * into a single node with many children, which are reduced in parallel in runs of about the threshold size,
+ * and {@link #toBalancedProgram()} turns the chains into balanced trees of logarithmic depth.
+ * {@code -} and {@code /} always stay binary. Integer overflow wraps around, so regrouping never changes results.
+ * Instances are safe to share between threads.
+ */
+public final class ExpressionTree {
+    public static final int DEFAULT_THRESHOLD = 1 << 14;
+
+    private static final ThreadLocal<IntEvaluator> EVALUATOR = ThreadLocal.withInitial(IntEvaluator::new);
+
+    private final CompiledExpression program;
+    private final Node root;
+
+    private ExpressionTree(CompiledExpression program, Node root) {
+        this.program = program;
+        this.root = root;
+    }
+
+    public static ExpressionTree of(IList<Token> polish) {
+        return of(CompiledExpression.of(polish));
+    }
+
+    public static ExpressionTree of(CompiledExpression program) {
+        return of(program, false);
+    }
+
+    /**
+     * @param flatten whether to merge chains of one associative operation into a single node
+     */
+    public static ExpressionTree of(CompiledExpression program, boolean flatten) {
+        byte[] opcodes = program.opcodes();
+        int[] operands = program.operands();
+        // a Node, or a Chain while more operands may still join it
+        Object[] stack = new Object[program.getMaxDepth()];
+        int depth = 0;
+        for (int i = 0; i < opcodes.length; i++) {
+            byte opcode = opcodes[i];
+            if (opcode == Opcode.PUSH || opcode == Opcode.LOAD) {
+                stack[depth++] = new Node(opcode, operands[i], new Node[0], i, 1);
+                continue;
+            }
+            Object left = stack[depth - 2];
+            Object right = stack[depth - 1];
+            depth -= 2;
+            if (flatten && isAssociative(opcode)) {
+                stack[depth++] = Chain.merge(opcode, left, right, i + 1);
+            }
+            else {
+                Node leftNode = Chain.close(left);
+                Node rightNode = Chain.close(right);
+                stack[depth++] = new Node(opcode, 0, new Node[] {leftNode, rightNode},
+                        leftNode.start, i + 1 - leftNode.start);
+            }
+        }
+        return new ExpressionTree(program, Chain.close(stack[0]));
+    }
+
+    static boolean isAssociative(byte opcode) {
+        return opcode == Opcode.ADD || opcode == Opcode.MULTIPLY || opcode == Opcode.MIN || opcode == Opcode.MAX;
+    }
+
+    /**
+     * Evaluates on the common pool with {@link #DEFAULT_THRESHOLD}.
+     */
+    public int evaluate(int[] vars) {
+        return evaluate(ForkJoinPool.commonPool(), DEFAULT_THRESHOLD, vars);
+    }
+
+    /**
+     * @param threshold subtrees of fewer instructions are not split any further
+     * @param vars      variable values indexed by slot, see {@link CompiledExpression#getVariables()}
+     */
+    public int evaluate(ForkJoinPool pool, int threshold, int[] vars) {
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("Threshold must be positive");
+        }
+        if (vars.length < program.getVariableCount()) {
+            throw new IllegalArgumentException(
+                    "Expected " + program.getVariableCount() + " variables, got " + vars.length);
+        }
+        if (root.forkSize < threshold) {
+            return evaluateSequentially(root, vars);
+        }
+        return pool.invoke(new Evaluation(root, threshold, vars));
+    }
+
+    public Node getRoot() {
+        return root;
+    }
+
+    public CompiledExpression getProgram() {
+        return program;
+    }
+
+    /**
+     * Emits the tree as a postfix program in which every node with more than two children is reduced as a
+     * balanced binary tree, so {@code 1 + 2 + ... + n} has dependency depth {@code log n} instead of {@code n}.
+     * Variable slots are kept.
+     */
+    public CompiledExpression toBalancedProgram() {
+        String[] variables = program.getVariables();
+        IList<Token> polish = new ArrayDeque<>(program.size());
+        // children [from, to) of a node still to be emitted; to < 0 stands for the node's operation itself
+        IStack<Frame> frames = new ArrayDeque<>();
+        frames.push(new Frame(root, 0, root.children.length));
+        while (frames.size() != 0) {
+            Frame frame = frames.pop();
+            Node node = frame.node;
+            if (node.opcode == Opcode.PUSH) {
+                polish.putBack(TokenNumber.of(node.operand));
+            }
+            else if (node.opcode == Opcode.LOAD) {
+                polish.putBack(new TokenVariable(variables[node.operand]));
+            }
+            else if (frame.to < 0) {
+                polish.putBack(TokenBuffer.computer(node.opcode));
+            }
+            else if (frame.to - frame.from == 1) {
+                Node child = node.children[frame.from];
+                frames.push(new Frame(child, 0, child.children.length));
+            }
+            else {
+                int middle = (frame.from + frame.to) >>> 1;
+                frames.push(new Frame(node, 0, -1));
+                frames.push(new Frame(node, middle, frame.to));
+                frames.push(new Frame(node, frame.from, middle));
+            }
+        }
+        return CompiledExpression.of(polish, variables);
+    }
+
+    private int evaluateSequentially(Node node, int[] vars) {
+        return EVALUATOR.get().evaluate(program.opcodes(), program.operands(),
+                node.start, node.start + node.size, program.getMaxDepth(), vars);
+    }
+
+    public static final class Node {
+        private final byte opcode;
+        private final int operand;
+        private final Node[] children;
+        private final int start;
+        private final int size;
+        private final int heaviest;
+        // instructions of the largest run of children that some node of this subtree forks as one task,
+        // so the subtree forks nothing and is evaluated sequentially if this is below the threshold
+        private final int forkSize;
+
+        private Node(byte opcode, int operand, Node[] children, int start, int size) {
+            this.opcode = opcode;
+            this.operand = operand;
+            this.children = children;
+            this.start = start;
+            this.size = size;
+
+            int heaviest = 0;
+            for (int j = 1; j < children.length; j++) {
+                if (children[j].size > children[heaviest].size) {
+                    heaviest = j;
+                }
+            }
+            this.heaviest = heaviest;
+            // runs never span the heaviest child, which stays on the path of its parent's task
+            int forkSize = 0;
+            int runSize = 0;
+            for (int j = 0; j < children.length; j++) {
+                forkSize = Math.max(forkSize, children[j].forkSize);
+                runSize = j == heaviest ? 0 : runSize + children[j].size;
+                forkSize = Math.max(forkSize, runSize);
+            }
+            this.forkSize = forkSize;
+        }
+
+        /**
+         * @return {@link Opcode#PUSH} or {@link Opcode#LOAD} for leaves, otherwise the operation
+         */
+        public byte getOpcode() {
+            return opcode;
+        }
+
+        /**
+         * @return the constant of a {@link Opcode#PUSH} leaf or the slot of a {@link Opcode#LOAD} leaf
+         */
+        public int getOperand() {
+            return operand;
+        }
+
+        public int getChildCount() {
+            return children.length;
+        }
+
+        public Node getChild(int i) {
+            return children[i];
+        }
+
+        /**
+         * @return index in the postfix program of the first instruction of this subtree
+         */
+        public int getStart() {
+            return start;
+        }
+
+        /**
+         * @return number of instructions of this subtree in the postfix program
+         */
+        public int getSize() {
+            return size;
+        }
+
+        private Node heaviestChild() {
+            return children[heaviest];
+        }
+    }
+
+    /**
+     * Follows the heaviest child down from its node, forking the other children in runs of at least the threshold.
+     * Forked children are at most half the size of their parent, so tasks nest only logarithmically deep
+     * even for degenerate chains such as {@code 1 - 2 - ... - n}.
+     */
+    private final class Evaluation extends RecursiveTask<Integer> {
+        private static final long serialVersionUID = 1L;
+
+        private final Node node;
+        private final int threshold;
+        private final int[] vars;
+
+        Evaluation(Node node, int threshold, int[] vars) {
+            this.node = node;
+            this.threshold = threshold;
+            this.vars = vars;
+        }
+
+        @Override
+        protected Integer compute() {
+            Node[] path = new Node[16];
+            // per node on the path, its children grouped in order; null stands for the heaviest child
+            Reduction[][] parts = new Reduction[16][];
+            int length = 0;
+            Node current = node;
+            while (current.forkSize >= threshold) {
+                if (length == path.length) {
+                    path = Arrays.copyOf(path, length * 2);
+                    parts = Arrays.copyOf(parts, length * 2);
+                }
+                path[length] = current;
+                parts[length++] = split(current);
+                current = current.heaviestChild();
+            }
+
+            int value = evaluateSequentially(current, vars);
+            for (int i = length - 1; i >= 0; i--) {
+                Reduction[] nodeParts = parts[i];
+                int[] values = new int[nodeParts.length];
+                // joined in reverse order of forking, as ForkJoinTask recommends
+                for (int j = values.length - 1; j >= 0; j--) {
+                    Reduction part = nodeParts[j];
+                    if (part == null) {
+                        values[j] = value;
+                    }
+                    else if (part.forked) {
+                        values[j] = part.join();
+                    }
+                    else {
+                        values[j] = part.reduce();
+                    }
+                }
+                value = values[0];
+                for (int j = 1; j < values.length; j++) {
+                    value = IntEvaluator.apply(path[i].opcode, value, values[j]);
+                }
+            }
+            return value;
+        }
+
+        private Reduction[] split(Node parent) {
+            Node heaviest = parent.heaviestChild();
+            IList<Reduction> parts = new ArrayDeque<>();
+            int from = 0;
+            int runSize = 0;
+            for (int j = 0; j < parent.children.length; j++) {
+                Node child = parent.children[j];
+                if (child == heaviest) {
+                    if (from < j) {
+                        parts.putBack(new Reduction(parent, from, j, this));
+                    }
+                    parts.putBack(null);
+                    from = j + 1;
+                    runSize = 0;
+                    continue;
+                }
+                runSize += child.size;
+                if (runSize >= threshold) {
+                    Reduction run = new Reduction(parent, from, j + 1, this);
+                    run.forked = true;
+                    run.fork();
+                    parts.putBack(run);
+                    from = j + 1;
+                    runSize = 0;
+                }
+            }
+            if (from < parent.children.length) {
+                parts.putBack(new Reduction(parent, from, parent.children.length, this));
+            }
+            Reduction[] result = new Reduction[parts.size()];
+            for (int j = 0; j < result.length; j++) {
+                result[j] = parts.popFront();
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Combines the children {@code [from, to)} of a node with its operation, left to right.
+     */
+    private final class Reduction extends RecursiveTask<Integer> {
+        private static final long serialVersionUID = 1L;
+
+        private final Node node;
+        private final int from;
+        private final int to;
+        private final Evaluation owner;
+        private boolean forked = false;
+
+        Reduction(Node node, int from, int to, Evaluation owner) {
+            this.node = node;
+            this.from = from;
+            this.to = to;
+            this.owner = owner;
+        }
+
+        @Override
+        protected Integer compute() {
+            return reduce();
+        }
+
+        int reduce() {
+            int value = evaluate(node.children[from]);
+            for (int j = from + 1; j < to; j++) {
+                value = IntEvaluator.apply(node.opcode, value, evaluate(node.children[j]));
+            }
+            return value;
+        }
+
+        private int evaluate(Node child) {
+            if (child.forkSize < owner.threshold) {
+                return evaluateSequentially(child, owner.vars);
+            }
+            return new Evaluation(child, owner.threshold, owner.vars).invoke();
+        }
+    }
+
+    /**
+     * Chain of one associative operation whose operands are still being collected while building a tree.
+     * Merging keeps the longer chain and moves the other's children into it, so building stays O(n log n).
+     */
+    private static final class Chain {
+        private final byte opcode;
+        private final IList<Node> children;
+        private int start;
+        private int end;
+
+        private Chain(byte opcode, IList<Node> children, int start, int end) {
+            this.opcode = opcode;
+            this.children = children;
+            this.start = start;
+            this.end = end;
+        }
+
+        static Chain merge(byte opcode, Object left, Object right, int end) {
+            Chain leftChain = left instanceof Chain && ((Chain) left).opcode == opcode ? (Chain) left : null;
+            Chain rightChain = right instanceof Chain && ((Chain) right).opcode == opcode ? (Chain) right : null;
+            Chain result;
+            if (leftChain != null && (rightChain == null || leftChain.children.size() >= rightChain.children.size())) {
+                result = leftChain;
+                if (rightChain != null) {
+                    while (rightChain.children.size() != 0) {
+                        result.children.putBack(rightChain.children.popFront());
+                    }
+                }
+                else {
+                    result.children.putBack(close(right));
+                }
+            }
+            else if (rightChain != null) {
+                result = rightChain;
+                if (leftChain != null) {
+                    while (leftChain.children.size() != 0) {
+                        result.children.putFront(leftChain.children.popBack());
+                    }
+                }
+                else {
+                    result.children.putFront(close(left));
+                }
+                result.start = start(left);
+            }
+            else {
+                IList<Node> children = new ArrayDeque<>();
+                children.putBack(close(left));
+                children.putBack(close(right));
+                result = new Chain(opcode, children, start(left), end);
+            }
+            result.end = end;
+            return result;
+        }
+
+        static Node close(Object subtree) {
+            if (subtree instanceof Node) {
+                return (Node) subtree;
+            }
+            Chain chain = (Chain) subtree;
+            Node[] children = new Node[chain.children.size()];
+            int i = 0;
+            for (Node child : chain.children) {
+                children[i++] = child;
+            }
+            return new Node(chain.opcode, 0, children, chain.start, chain.end - chain.start);
+        }
+
+        private static int start(Object subtree) {
+            return subtree instanceof Node ? ((Node) subtree).start : ((Chain) subtree).start;
+        }
+    }
+
+    private static final class Frame {
+        final Node node;
+        final int from;
+        final int to;
+
+        Frame(Node node, int from, int to) {
+            this.node = node;
+            this.from = from;
+            this.to = to;
+        }
+    }
+}
@@ -1,3 +1,6 @@
 public interface IList<T> extends IDeque<T> {
-
+    /**
+     * Removes all elements, leaving the list ready for reuse.
+     */
+    void clear();
 }
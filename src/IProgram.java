@@ -0,0 +1,6 @@
+/**
+ * Executable form of a postfix program.
+ */
+public interface IProgram {
+    int evaluate(int[] vars);
+}
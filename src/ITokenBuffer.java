@@ -0,0 +1,47 @@
+/**
+ * Primitive token list: each token is a kind ({@link TokenKind}) and an int payload,
+ * see {@link TokenBuffer}. The last token can be removed, so a buffer also serves as a stack.
+ */
+public interface ITokenBuffer extends ICollection {
+    void add(byte kind, int payload);
+
+    byte kind(int i);
+
+    int payload(int i);
+
+    void removeLast();
+
+    /**
+     * Removes all tokens and variables.
+     */
+    void clear();
+
+    /**
+     * @return names of the variables referenced by {@link TokenKind#VARIABLE} payloads
+     */
+    VariableTable getVariables();
+
+    /**
+     * @return the token at {@code i} as a {@link Token} object
+     */
+    default Token get(int i) {
+        int payload = payload(i);
+        return switch (kind(i)) {
+            case TokenKind.NUMBER -> TokenNumber.of(payload);
+            case TokenKind.VARIABLE -> new TokenVariable(getVariables().name(payload));
+            case TokenKind.OPERATOR, TokenKind.FUNCTION -> TokenBuffer.computer((byte) payload);
+            case TokenKind.COMMA -> TokenSymbol.COMMA;
+            case TokenKind.LEFT_PARENTHESIS -> TokenSymbol.LEFT_PARENTHESIS;
+            case TokenKind.RIGHT_PARENTHESIS -> TokenSymbol.RIGHT_PARENTHESIS;
+            default -> throw new RuntimeException("Unknown token kind " + kind(i));
+        };
+    }
+
+    default IList<Token> toList() {
+        IList<Token> result = new ArrayDeque<>(size());
+        for (int i = 0; i < size(); i++) {
+            result.putBack(get(i));
+        }
+        return result;
+    }
+}
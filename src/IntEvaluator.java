@@ -0,0 +1,146 @@
+import java.util.Arrays;
+
+/**
+ * Evaluates postfix programs over a reusable {@code int[]} operand stack.
+ * After the stack has grown to fit the deepest program it sees, evaluation allocates nothing.
+ * Not thread-safe: keep one instance per thread.
+ */
+final class IntEvaluator {
+    private int[] stack = new int[16];
+    private int peakDepth = 0;
+
+    /**
+     * @param opcodes  instructions, see {@link Opcode}
+     * @param operands immediate operand of each instruction (the constant for {@link Opcode#PUSH})
+     * @param maxDepth maximum operand-stack depth the program reaches
+     * @param vars     variable values indexed by slot, read by {@link Opcode#LOAD}
+     */
+    public int evaluate(byte[] opcodes, int[] operands, int maxDepth, int[] vars) {
+        return evaluate(opcodes, operands, 0, opcodes.length, maxDepth, vars);
+    }
+
+    /**
+     * Evaluates the instructions {@code [from, to)} only, which must form a complete subexpression.
+     */
+    public int evaluate(byte[] opcodes, int[] operands, int from, int to, int maxDepth, int[] vars) {
+        if (stack.length < maxDepth) {
+            stack = new int[Math.max(maxDepth, stack.length * 2)];
+        }
+        int[] stack = this.stack;
+        int size = 0;
+        for (int i = from; i < to; i++) {
+            switch (opcodes[i]) {
+                case Opcode.PUSH -> stack[size++] = operands[i];
+                case Opcode.LOAD -> stack[size++] = vars[operands[i]];
+                case Opcode.ADD -> {
+                    size--;
+                    stack[size - 1] = stack[size - 1] + stack[size];
+                }
+                case Opcode.SUBTRACT -> {
+                    size--;
+                    stack[size - 1] = stack[size - 1] - stack[size];
+                }
+                case Opcode.MULTIPLY -> {
+                    size--;
+                    stack[size - 1] = stack[size - 1] * stack[size];
+                }
+                case Opcode.DIVIDE -> {
+                    size--;
+                    stack[size - 1] = stack[size - 1] / stack[size];
+                }
+                case Opcode.MIN -> {
+                    size--;
+                    stack[size - 1] = Math.min(stack[size - 1], stack[size]);
+                }
+                case Opcode.MAX -> {
+                    size--;
+                    stack[size - 1] = Math.max(stack[size - 1], stack[size]);
+                }
+                default -> throw new RuntimeException("Unknown opcode " + opcodes[i]);
+            }
+        }
+        return stack[0];
+    }
+
+    /**
+     * @param polish postfix program, as produced by {@link ShutingYard#process(ITokenBuffer, ITokenBuffer)}
+     * @param vars   variable values indexed by the buffer's slots
+     */
+    public int evaluate(ITokenBuffer polish, int[] vars) {
+        int[] stack = this.stack;
+        int size = 0;
+        int peakDepth = 0;
+        for (int i = 0; i < polish.size(); i++) {
+            int payload = polish.payload(i);
+            byte kind = polish.kind(i);
+            // grown on demand: sizing to polish.size() would defeat off-heap buffers
+            if (size == stack.length && (kind == TokenKind.NUMBER || kind == TokenKind.VARIABLE)) {
+                stack = this.stack = Arrays.copyOf(stack, stack.length * 2);
+            }
+            switch (kind) {
+                case TokenKind.NUMBER -> {
+                    stack[size++] = payload;
+                    peakDepth = Math.max(peakDepth, size);
+                }
+                case TokenKind.VARIABLE -> {
+                    stack[size++] = vars[payload];
+                    peakDepth = Math.max(peakDepth, size);
+                }
+                case TokenKind.OPERATOR, TokenKind.FUNCTION -> {
+                    if (size < 2) {
+                        throw new RuntimeException("Malformed expression");
+                    }
+                    size--;
+                    stack[size - 1] = apply((byte) payload, stack[size - 1], stack[size]);
+                }
+                default -> throw new RuntimeException("Unexpected token in postfix program: " + polish.get(i));
+            }
+        }
+        this.peakDepth = peakDepth;
+        if (size != 1) {
+            throw new RuntimeException("Malformed expression");
+        }
+        return stack[0];
+    }
+
+    /**
+     * @return peak operand-stack depth of the last completed {@link #evaluate(ITokenBuffer, int[])}
+     */
+    public int peakDepth() {
+        return peakDepth;
+    }
+
+    /**
+     * Evaluates a register program, as built by {@link SharedExpression}: instruction {@code k} writes register
+     * {@code k} from registers with lower numbers, and the last register holds the result.
+     *
+     * @param lefts  constant of {@link Opcode#PUSH}, slot of {@link Opcode#LOAD}, otherwise the left operand register
+     * @param rights right operand register of operations, unused otherwise
+     */
+    public int evaluateRegisters(byte[] opcodes, int[] lefts, int[] rights, int[] vars) {
+        if (stack.length < opcodes.length) {
+            stack = new int[Math.max(opcodes.length, stack.length * 2)];
+        }
+        int[] registers = this.stack;
+        for (int k = 0; k < opcodes.length; k++) {
+            registers[k] = switch (opcodes[k]) {
+                case Opcode.PUSH -> lefts[k];
+                case Opcode.LOAD -> vars[lefts[k]];
+                default -> apply(opcodes[k], registers[lefts[k]], registers[rights[k]]);
+            };
+        }
+        return registers[opcodes.length - 1];
+    }
+
+    static int apply(byte opcode, int left, int right) {
+        return switch (opcode) {
+            case Opcode.ADD -> left + right;
+            case Opcode.SUBTRACT -> left - right;
+            case Opcode.MULTIPLY -> left * right;
+            case Opcode.DIVIDE -> left / right;
+            case Opcode.MIN -> Math.min(left, right);
+            case Opcode.MAX -> Math.max(left, right);
+            default -> throw new RuntimeException("Unknown opcode " + opcode);
+        };
+    }
+}
@@ -0,0 +1,180 @@
+/**
+ * Hand-written single-pass lexer over a {@link CharSequence}.
+ * Tokens may be separated by whitespace or written back to back ({@code max(1,2)*3}).
+ * Words other than function names are variables: a letter or underscore followed by
+ * letters, digits or underscores.
+ */
+class Lexer {
+    private final CharSequence input;
+    private int position;
+    private int offset = -1;
+
+    Lexer(CharSequence input) {
+        this.input = input;
+    }
+
+    public boolean hasNext() {
+        skipWhitespace();
+        return position < input.length();
+    }
+
+    /**
+     * @return the next token; its starting character offset is available via {@link #offset()}
+     */
+    public Token next() {
+        skipWhitespace();
+        if (position >= input.length()) {
+            throw new RuntimeException("Unexpected end of input");
+        }
+
+        offset = position;
+        char c = input.charAt(position);
+        if (isDigit(c)) {
+            return readNumber();
+        }
+        if (isLetter(c) || c == '_') {
+            return readWord();
+        }
+
+        position++;
+        Token token = punctuation(c);
+        if (token == null) {
+            throw new RuntimeException("Unknown token at offset " + offset);
+        }
+        return token;
+    }
+
+    /**
+     * Appends the next token to the buffer without creating a {@link Token} object.
+     */
+    public void next(ITokenBuffer out) {
+        skipWhitespace();
+        if (position >= input.length()) {
+            throw new RuntimeException("Unexpected end of input");
+        }
+
+        offset = position;
+        char c = input.charAt(position);
+        if (isDigit(c)) {
+            out.add(TokenKind.NUMBER, readNumberValue());
+            return;
+        }
+        if (isLetter(c) || c == '_') {
+            while (position < input.length() && isWordPart(input.charAt(position))) {
+                position++;
+            }
+            if (regionEquals(input, offset, position, TokenMin.SYMBOL)) {
+                out.add(TokenKind.FUNCTION, Opcode.MIN);
+            }
+            else if (regionEquals(input, offset, position, TokenMax.SYMBOL)) {
+                out.add(TokenKind.FUNCTION, Opcode.MAX);
+            }
+            else {
+                out.add(TokenKind.VARIABLE, out.getVariables().slot(input, offset, position));
+            }
+            return;
+        }
+
+        position++;
+        switch (c) {
+            case '+' -> out.add(TokenKind.OPERATOR, Opcode.ADD);
+            case '-' -> out.add(TokenKind.OPERATOR, Opcode.SUBTRACT);
+            case '*' -> out.add(TokenKind.OPERATOR, Opcode.MULTIPLY);
+            case '/' -> out.add(TokenKind.OPERATOR, Opcode.DIVIDE);
+            case ',' -> out.add(TokenKind.COMMA, 0);
+            case '(' -> out.add(TokenKind.LEFT_PARENTHESIS, 0);
+            case ')' -> out.add(TokenKind.RIGHT_PARENTHESIS, 0);
+            default -> throw new RuntimeException("Unknown token at offset " + offset);
+        }
+    }
+
+    /**
+     * @return operator or symbol token spelled by a single character, or null if there is none
+     */
+    static Token punctuation(char c) {
+        return switch (c) {
+            case '+' -> TokenPlus.getPlus();
+            case '-' -> TokenMinus.getMinus();
+            case '*' -> TokenMultiply.getMultiply();
+            case '/' -> TokenDivide.getDivide();
+            case ',' -> TokenSymbol.COMMA;
+            case '(' -> TokenSymbol.LEFT_PARENTHESIS;
+            case ')' -> TokenSymbol.RIGHT_PARENTHESIS;
+            default -> null;
+        };
+    }
+
+    /**
+     * @return function or variable token for the complete word {@code input[start, end)}
+     */
+    static Token word(CharSequence input, int start, int end) {
+        if (regionEquals(input, start, end, TokenMin.SYMBOL)) {
+            return TokenMin.getMin();
+        }
+        if (regionEquals(input, start, end, TokenMax.SYMBOL)) {
+            return TokenMax.getMax();
+        }
+        return new TokenVariable(input.subSequence(start, end).toString());
+    }
+
+    private static boolean regionEquals(CharSequence input, int start, int end, String word) {
+        if (end - start != word.length()) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            if (input.charAt(start + i) != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return character offset of the token last returned by {@link #next()}, or -1 before the first one
+     */
+    public int offset() {
+        return offset;
+    }
+
+    private Token readNumber() {
+        return TokenNumber.of(readNumberValue());
+    }
+
+    private int readNumberValue() {
+        int value = 0;
+        while (position < input.length() && isDigit(input.charAt(position))) {
+            int digit = input.charAt(position) - '0';
+            if (value > (Integer.MAX_VALUE - digit) / 10) {
+                throw new RuntimeException("Number is too large at offset " + offset);
+            }
+            value = value * 10 + digit;
+            position++;
+        }
+        return value;
+    }
+
+    private Token readWord() {
+        while (position < input.length() && isWordPart(input.charAt(position))) {
+            position++;
+        }
+        return word(input, offset, position);
+    }
+
+    private void skipWhitespace() {
+        while (position < input.length() && Character.isWhitespace(input.charAt(position))) {
+            position++;
+        }
+    }
+
+    static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    static boolean isWordPart(char c) {
+        return isLetter(c) || isDigit(c) || c == '_';
+    }
+
+    static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+}
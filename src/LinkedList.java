@@ -92,6 +92,12 @@ public class LinkedList<T> implements IStack<T>, IList<T> {
         return size;
     }
 
+    @Override
+    public void clear() {
+        sentinel.next = sentinel.prev = sentinel;
+        size = 0;
+    }
+
     @Override
     public String toString() {
         StringBuilder builder = new StringBuilder("[");
@@ -0,0 +1,42 @@
+/**
+ * {@code long} counterpart of {@link IntEvaluator}: evaluates postfix programs over a reusable {@code long[]}
+ * operand stack, with the same opcodes and the same wrap-around and truncating division semantics.
+ * Not thread-safe: keep one instance per thread.
+ */
+final class LongEvaluator {
+    private long[] stack = new long[16];
+
+    /**
+     * @param vars variable values indexed by slot, read by {@link Opcode#LOAD}
+     */
+    public long evaluate(byte[] opcodes, int[] operands, int maxDepth, long[] vars) {
+        if (stack.length < maxDepth) {
+            stack = new long[Math.max(maxDepth, stack.length * 2)];
+        }
+        long[] stack = this.stack;
+        int size = 0;
+        for (int i = 0; i < opcodes.length; i++) {
+            switch (opcodes[i]) {
+                case Opcode.PUSH -> stack[size++] = operands[i];
+                case Opcode.LOAD -> stack[size++] = vars[operands[i]];
+                default -> {
+                    size--;
+                    stack[size - 1] = apply(opcodes[i], stack[size - 1], stack[size]);
+                }
+            }
+        }
+        return stack[0];
+    }
+
+    static long apply(byte opcode, long left, long right) {
+        return switch (opcode) {
+            case Opcode.ADD -> left + right;
+            case Opcode.SUBTRACT -> left - right;
+            case Opcode.MULTIPLY -> left * right;
+            case Opcode.DIVIDE -> left / right;
+            case Opcode.MIN -> Math.min(left, right);
+            case Opcode.MAX -> Math.max(left, right);
+            default -> throw new RuntimeException("Unknown opcode " + opcode);
+        };
+    }
+}
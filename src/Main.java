@@ -1,10 +1,98 @@
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.MathContext;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Scanner;
 
+/**
+ * Without arguments reads one expression from stdin and prints its value.
+ * <p>
+ * Batch mode: {@code --batch [--input=FILE] [--output=postfix|value|both] [--threads=N] [--chunk=LINES]}
+ * processes every line of stdin, or of FILE if {@code --input} is given, writing one line per input line:
+ * empty for a blank line and {@code ERROR} for a malformed one, which is also reported on stderr.
+ * In both modes {@code --mode=int|long|double|big-integer|big-decimal} selects the {@link NumericMode}
+ * and {@code --precision=DIGITS} the precision of big-decimal (34 by default).
+ * A single-threaded run over FILE memory-maps it and lexes the bytes in place.
+ * With more than one thread, chunks of lines are processed in parallel and written in input order.
+ */
 public class Main {
-    public static void main(String[] args) {
-        Scanner scanner = new Scanner(System.in);
-        String line = scanner.nextLine();
-        IList<Token> result = ShutingYard.process(ShutingYard.parse(line));
-        System.out.println(ShutingYard.evaluate(result));
+    public static void main(String[] args) throws IOException {
+        boolean batch = false;
+        String input = null;
+        BatchRunner.Output output = BatchRunner.Output.VALUE;
+        int threads = 1;
+        int chunkSize = 4096;
+        NumericMode mode = NumericMode.INT;
+        MathContext context = MathContext.DECIMAL128;
+        for (String arg : args) {
+            if (arg.equals("--batch")) {
+                batch = true;
+            }
+            else if (arg.startsWith("--input=")) {
+                batch = true;
+                input = arg.substring("--input=".length());
+            }
+            else if (arg.startsWith("--output=")) {
+                output = BatchRunner.Output.parse(arg.substring("--output=".length()));
+            }
+            else if (arg.startsWith("--threads=")) {
+                batch = true;
+                threads = Integer.parseInt(arg.substring("--threads=".length()));
+            }
+            else if (arg.startsWith("--chunk=")) {
+                chunkSize = Integer.parseInt(arg.substring("--chunk=".length()));
+            }
+            else if (arg.startsWith("--mode=")) {
+                mode = NumericMode.parse(arg.substring("--mode=".length()));
+            }
+            else if (arg.startsWith("--precision=")) {
+                context = new MathContext(Integer.parseInt(arg.substring("--precision=".length())));
+            }
+            else {
+                throw new IllegalArgumentException("Unknown argument " + arg);
+            }
+        }
+
+        if (!batch) {
+            Scanner scanner = new Scanner(System.in);
+            String line = scanner.nextLine();
+            CompiledExpression expression = CompiledExpression.compile(line);
+            if (mode == NumericMode.INT) {
+                System.out.println(expression.evaluate());
+            }
+            else {
+                System.out.println(NumericMode.format(expression.evaluate(mode, context)));
+            }
+            return;
+        }
+
+        Writer out = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(FileDescriptor.out), StandardCharsets.US_ASCII), BatchRunner.BUFFER_SIZE);
+        Writer errors = new OutputStreamWriter(new FileOutputStream(FileDescriptor.err), StandardCharsets.US_ASCII);
+        long failed;
+        if (input != null && threads == 1) {
+            failed = new BatchRunner(output, mode, context).run(Path.of(input), out, errors);
+        }
+        else {
+            try (ReadableByteChannel channel = input == null
+                    ? Channels.newChannel(System.in)
+                    : FileChannel.open(Path.of(input), StandardOpenOption.READ)) {
+                failed = threads == 1
+                        ? new BatchRunner(output, mode, context).run(channel, out, errors)
+                        : new ParallelBatchRunner(output, mode, context, threads, chunkSize).run(channel, out, errors);
+            }
+        }
+        if (failed != 0) {
+            System.exit(1);
+        }
     }
 }
@@ -0,0 +1,78 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads newline-delimited ASCII text by memory-mapping the file and handing out each line as a reusable
+ * {@link AsciiCharSequence} view of the mapping, so no {@link String} is created per line.
+ * Files larger than one mapping are processed region by region, split at line boundaries.
+ */
+final class MappedLineReader {
+    static final long REGION_SIZE = 1L << 30;
+
+    interface LineConsumer {
+        /**
+         * @param line view that is only valid during the call
+         */
+        void accept(CharSequence line, long lineNumber) throws IOException;
+    }
+
+    private MappedLineReader() {
+    }
+
+    /**
+     * @return number of lines read
+     */
+    public static long forEachLine(Path file, LineConsumer consumer) throws IOException {
+        return forEachLine(file, REGION_SIZE, consumer);
+    }
+
+    static long forEachLine(Path file, long regionSize, LineConsumer consumer) throws IOException {
+        AsciiCharSequence line = new AsciiCharSequence();
+        long lineNumber = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                int length = (int) Math.min(regionSize, size - position);
+                MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                boolean last = position + length == size;
+                int end = last ? length : lastLineEnd(region, length);
+                if (end == 0) {
+                    throw new IOException("Line at offset " + position + " is longer than a mapped region");
+                }
+
+                int start = 0;
+                for (int i = 0; i < end; i++) {
+                    if (region.get(i) == '\n') {
+                        consumer.accept(line.set(region, start, trimCarriageReturn(region, start, i)), ++lineNumber);
+                        start = i + 1;
+                    }
+                }
+                if (start < end) {
+                    consumer.accept(line.set(region, start, trimCarriageReturn(region, start, end)), ++lineNumber);
+                }
+                position += end;
+            }
+        }
+        return lineNumber;
+    }
+
+    /**
+     * @return index just past the last newline in {@code region[0, length)}, or 0 if there is none
+     */
+    private static int lastLineEnd(MappedByteBuffer region, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (region.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    private static int trimCarriageReturn(MappedByteBuffer region, int start, int end) {
+        return end > start && region.get(end - 1) == '\r' ? end - 1 : end;
+    }
+}
@@ -0,0 +1,40 @@
+import java.math.BigDecimal;
+import java.util.Locale;
+
+/**
+ * Number type an expression is evaluated in. Literals are always ints; in wider modes they are
+ * widened before any operation, so intermediate results no longer wrap around at 32 bits.
+ */
+public enum NumericMode {
+    /**
+     * 32-bit two's complement, overflow wraps around. The default.
+     */
+    INT,
+    /**
+     * 64-bit two's complement, overflow wraps around.
+     */
+    LONG,
+    /**
+     * IEEE 754 double: division is exact rather than truncated, and dividing by zero gives an infinity or NaN.
+     */
+    DOUBLE,
+    /**
+     * Arbitrary-precision integers, division truncates toward zero.
+     */
+    BIG_INTEGER,
+    /**
+     * Arbitrary-precision decimals, every operation rounded to the configured {@link java.math.MathContext}.
+     */
+    BIG_DECIMAL;
+
+    static NumericMode parse(String s) {
+        return valueOf(s.toUpperCase(Locale.ROOT).replace('-', '_'));
+    }
+
+    /**
+     * @return the value as the command line prints it: decimals in plain notation, never with an exponent
+     */
+    static String format(Number value) {
+        return value instanceof BigDecimal ? ((BigDecimal) value).toPlainString() : value.toString();
+    }
+}
@@ -0,0 +1,130 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * {@link ITokenBuffer} stored outside the Java heap, for expressions with hundreds of millions of tokens.
+ * Tokens live in fixed-size chunks of direct memory, so growing never copies and the garbage collector
+ * only ever sees a handful of small buffer objects. Works as the operator stack of
+ * {@link ShutingYard#process(ITokenBuffer, ITokenBuffer, ITokenBuffer)} as well.
+ * <p>
+ * Direct memory is capped by {@code -XX:MaxDirectMemorySize} (by default the maximum heap size).
+ * {@link #close()} releases the chunks; the memory itself is returned once the collector reclaims them,
+ * as Java 17 has no stable API for freeing direct memory deterministically. {@code ForeignTokenBuffer} in
+ * {@code foreign/} frees its memory on close with the incubating foreign memory API instead.
+ * Not thread-safe.
+ */
+final class OffHeapTokenBuffer implements ITokenBuffer, AutoCloseable {
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private ByteBuffer[] kinds = new ByteBuffer[4];
+    private ByteBuffer[] payloads = new ByteBuffer[4];
+    private int chunks = 0;
+    private int size = 0;
+    private final VariableTable variables = new VariableTable();
+    private boolean closed = false;
+
+    @Override
+    public void add(byte kind, int payload) {
+        if (size == chunks << CHUNK_BITS) {
+            addChunk();
+        }
+        int chunk = size >>> CHUNK_BITS;
+        int index = size & CHUNK_MASK;
+        kinds[chunk].put(index, kind);
+        payloads[chunk].putInt(index << 2, payload);
+        size++;
+    }
+
+    @Override
+    public byte kind(int i) {
+        checkIndex(i);
+        return kinds[i >>> CHUNK_BITS].get(i & CHUNK_MASK);
+    }
+
+    @Override
+    public int payload(int i) {
+        checkIndex(i);
+        return payloads[i >>> CHUNK_BITS].getInt((i & CHUNK_MASK) << 2);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void removeLast() {
+        if (size == 0) {
+            throw new RuntimeException("Buffer is empty");
+        }
+        size--;
+    }
+
+    /**
+     * Removes all tokens and variables. Chunks already allocated are kept for reuse.
+     */
+    @Override
+    public void clear() {
+        size = 0;
+        variables.clear();
+    }
+
+    @Override
+    public VariableTable getVariables() {
+        return variables;
+    }
+
+    /**
+     * @return bytes of direct memory held by this buffer
+     */
+    public long allocatedBytes() {
+        return (long) chunks * CHUNK_SIZE * (Byte.BYTES + Integer.BYTES);
+    }
+
+    /**
+     * Releases all chunks. The buffer cannot be used afterwards; closing twice does nothing.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        Arrays.fill(kinds, 0, chunks, null);
+        Arrays.fill(payloads, 0, chunks, null);
+        chunks = 0;
+        size = 0;
+        variables.clear();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            if (i != 0) {
+                builder.append(' ');
+            }
+            builder.append(get(i));
+        }
+        return builder.toString();
+    }
+
+    private void addChunk() {
+        if (closed) {
+            throw new IllegalStateException("Buffer is closed");
+        }
+        if (chunks == kinds.length) {
+            kinds = Arrays.copyOf(kinds, chunks * 2);
+            payloads = Arrays.copyOf(payloads, chunks * 2);
+        }
+        kinds[chunks] = ByteBuffer.allocateDirect(CHUNK_SIZE);
+        payloads[chunks] = ByteBuffer.allocateDirect(CHUNK_SIZE * Integer.BYTES).order(ByteOrder.nativeOrder());
+        chunks++;
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException(i);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+/**
+ * Instructions of compiled postfix programs, see {@link CompiledExpression}.
+ */
+class Opcode {
+    public static final byte PUSH = 0;
+    public static final byte ADD = PUSH + 1;
+    public static final byte SUBTRACT = ADD + 1;
+    public static final byte MULTIPLY = SUBTRACT + 1;
+    public static final byte DIVIDE = MULTIPLY + 1;
+    public static final byte MIN = DIVIDE + 1;
+    public static final byte MAX = MIN + 1;
+    public static final byte LOAD = MAX + 1;
+}
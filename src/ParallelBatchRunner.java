@@ -0,0 +1,134 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.MathContext;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Parallel version of {@link BatchRunner}: the input is split into chunks of whole lines that are
+ * compiled and evaluated on a {@link ForkJoinPool}, while results are written in input order.
+ * Each worker thread reuses its own {@link BatchRunner}, so workers share no mutable state.
+ * At most two chunks per thread are in flight, which bounds memory use.
+ */
+final class ParallelBatchRunner {
+    private final BatchRunner.Output output;
+    private final NumericMode mode;
+    private final MathContext context;
+    private final int threads;
+    private final int chunkSize;
+
+    /**
+     * @param threads   number of worker threads
+     * @param chunkSize number of lines per task
+     */
+    ParallelBatchRunner(BatchRunner.Output output, int threads, int chunkSize) {
+        this(output, NumericMode.INT, MathContext.DECIMAL128, threads, chunkSize);
+    }
+
+    /**
+     * @param context   rounding of {@link NumericMode#BIG_DECIMAL}
+     * @param threads   number of worker threads
+     * @param chunkSize number of lines per task
+     */
+    ParallelBatchRunner(BatchRunner.Output output, NumericMode mode, MathContext context, int threads, int chunkSize) {
+        if (threads <= 0 || chunkSize <= 0) {
+            throw new IllegalArgumentException("Thread count and chunk size must be positive");
+        }
+        this.output = output;
+        this.mode = mode;
+        this.context = context;
+        this.threads = threads;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @return number of lines that could not be processed
+     */
+    public long run(ReadableByteChannel input, Writer out, Writer errors) throws IOException {
+        BufferedReader reader = BatchRunner.newReader(input);
+        ThreadLocal<BatchRunner> runners = ThreadLocal.withInitial(() -> new BatchRunner(output, mode, context));
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        IQueue<Future<Chunk>> pending = new ArrayDeque<>();
+        long failed = 0;
+        try {
+            long lineNumber = 0;
+            String[] lines = new String[chunkSize];
+            int size = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines[size++] = line;
+                lineNumber++;
+                if (size == chunkSize) {
+                    pending.putBack(pool.submit(new Chunk(lines, size, lineNumber - size + 1, runners)));
+                    lines = new String[chunkSize];
+                    size = 0;
+                    if (pending.size() >= 2 * threads) {
+                        failed += write(pending.popFront(), out, errors);
+                    }
+                }
+            }
+            if (size != 0) {
+                pending.putBack(pool.submit(new Chunk(lines, size, lineNumber - size + 1, runners)));
+            }
+            while (pending.size() != 0) {
+                failed += write(pending.popFront(), out, errors);
+            }
+        }
+        finally {
+            pool.shutdownNow();
+        }
+        out.flush();
+        errors.flush();
+        return failed;
+    }
+
+    private static long write(Future<Chunk> future, Writer out, Writer errors) throws IOException {
+        Chunk chunk;
+        try {
+            chunk = future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for results", e);
+        }
+        catch (ExecutionException e) {
+            throw new IOException("Failed to process a chunk", e.getCause());
+        }
+        out.append(chunk.out);
+        errors.append(chunk.errors);
+        return chunk.failed;
+    }
+
+    private static final class Chunk implements Callable<Chunk> {
+        private final String[] lines;
+        private final int size;
+        private final long firstLine;
+        private final ThreadLocal<BatchRunner> runners;
+
+        final StringBuilder out = new StringBuilder();
+        final StringBuilder errors = new StringBuilder();
+        long failed = 0;
+
+        Chunk(String[] lines, int size, long firstLine, ThreadLocal<BatchRunner> runners) {
+            this.lines = lines;
+            this.size = size;
+            this.firstLine = firstLine;
+            this.runners = runners;
+        }
+
+        @Override
+        public Chunk call() throws IOException {
+            BatchRunner runner = runners.get();
+            for (int i = 0; i < size; i++) {
+                if (!runner.process(lines[i], firstLine + i, out, errors)) {
+                    failed++;
+                }
+            }
+            return this;
+        }
+    }
+}
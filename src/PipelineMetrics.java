@@ -0,0 +1,100 @@
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Opt-in metrics of the {@link ShutingYard} stages (parse, process, evaluate) and of
+ * {@link CompiledExpression} evaluation: call and token counts, latency histograms and peak stack depths.
+ * Disabled by default, or enabled from the start with {@code -Dexpressions.metrics=true}.
+ * While disabled, each instrumented call only reads one volatile flag.
+ */
+public final class PipelineMetrics implements PipelineMetricsMXBean {
+    public static final String OBJECT_NAME = "ExpressionParser:type=PipelineMetrics";
+
+    private static final PipelineMetrics INSTANCE = new PipelineMetrics();
+    private static volatile boolean enabled = Boolean.getBoolean("expressions.metrics");
+
+    private final StageMetrics parse = new StageMetrics("parse");
+    private final StageMetrics process = new StageMetrics("process");
+    private final StageMetrics evaluate = new StageMetrics("evaluate");
+
+    private PipelineMetrics() {
+    }
+
+    public static PipelineMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return the metrics to record into, or null while disabled
+     */
+    static PipelineMetrics active() {
+        return enabled ? INSTANCE : null;
+    }
+
+    /**
+     * Registers the metrics in the platform MBean server under {@link #OBJECT_NAME}, if not registered yet.
+     */
+    public static void registerMBean() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(INSTANCE, name);
+            }
+        }
+        catch (JMException e) {
+            throw new RuntimeException("Cannot register " + OBJECT_NAME, e);
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        PipelineMetrics.enabled = enabled;
+    }
+
+    @Override
+    public StageSnapshot getParse() {
+        return parse.snapshot();
+    }
+
+    @Override
+    public StageSnapshot getProcess() {
+        return process.snapshot();
+    }
+
+    @Override
+    public StageSnapshot getEvaluate() {
+        return evaluate.snapshot();
+    }
+
+    @Override
+    public void reset() {
+        parse.reset();
+        process.reset();
+        evaluate.reset();
+    }
+
+    StageMetrics parse() {
+        return parse;
+    }
+
+    StageMetrics process() {
+        return process;
+    }
+
+    StageMetrics evaluate() {
+        return evaluate;
+    }
+
+    @Override
+    public String toString() {
+        return getParse() + "\n" + getProcess() + "\n" + getEvaluate();
+    }
+}
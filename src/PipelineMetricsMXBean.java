@@ -0,0 +1,16 @@
+/**
+ * JMX view of {@link PipelineMetrics}, registered by {@link PipelineMetrics#registerMBean()}.
+ */
+public interface PipelineMetricsMXBean {
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    StageSnapshot getParse();
+
+    StageSnapshot getProcess();
+
+    StageSnapshot getEvaluate();
+
+    void reset();
+}
@@ -0,0 +1,247 @@
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary format for libraries of postfix programs, as produced by {@link ShutingYard#process}.
+ * <pre>
+ * library    := magic "PFXB", version u8, count varint, expression*, crc32 u32 (over everything before it)
+ * expression := length varint, token*
+ * token      := NUMBER zigzag-varint | VARIABLE length varint, ASCII name
+ *             | PLUS | MINUS | MULTIPLY | DIVIDE | MIN | MAX
+ * </pre>
+ * Tags are one byte each. Reading and writing work on any {@link ByteBuffer}, including memory-mapped files.
+ */
+final class PostfixCodec {
+    static final int MAGIC = 'P' << 24 | 'F' << 16 | 'X' << 8 | 'B';
+    static final byte VERSION = 1;
+
+    private static final byte NUMBER = 0;
+    private static final byte PLUS = 1;
+    private static final byte MINUS = 2;
+    private static final byte MULTIPLY = 3;
+    private static final byte DIVIDE = 4;
+    private static final byte MIN = 5;
+    private static final byte MAX = 6;
+    private static final byte VARIABLE = 7;
+
+    private PostfixCodec() {
+    }
+
+    public static ByteBuffer encode(IList<IList<Token>> library) {
+        int size = 4 + 1 + varintSize(library.size()) + 4;
+        for (IList<Token> expression : library) {
+            size += varintSize(expression.size());
+            for (Token token : expression) {
+                size += tokenSize(token);
+            }
+        }
+        ByteBuffer out = ByteBuffer.allocate(size);
+        write(library, out);
+        return out.flip();
+    }
+
+    /**
+     * Writes the library at the buffer's position and advances it.
+     *
+     * @throws java.nio.BufferOverflowException if the buffer is too small
+     */
+    public static void write(IList<IList<Token>> library, ByteBuffer out) {
+        int start = out.position();
+        out.putInt(MAGIC);
+        out.put(VERSION);
+        putVarint(out, library.size());
+        for (IList<Token> expression : library) {
+            putVarint(out, expression.size());
+            for (Token token : expression) {
+                putToken(out, token);
+            }
+        }
+        out.putInt((int) checksum(out, start, out.position()));
+    }
+
+    /**
+     * Reads a library starting at the buffer's position and advances it past the checksum.
+     */
+    public static IList<IList<Token>> read(ByteBuffer in) {
+        int count = readHeader(in);
+        IList<IList<Token>> library = new ArrayDeque<>(count);
+        for (int i = 0; i < count; i++) {
+            library.putBack(readExpression(in));
+        }
+        in.position(in.position() + 4);
+        return library;
+    }
+
+    /**
+     * Same as {@link #read} but compiles every expression.
+     */
+    public static CompiledExpression[] readCompiled(ByteBuffer in) {
+        int count = readHeader(in);
+        CompiledExpression[] library = new CompiledExpression[count];
+        for (int i = 0; i < count; i++) {
+            library[i] = CompiledExpression.of(readExpression(in));
+        }
+        in.position(in.position() + 4);
+        return library;
+    }
+
+    /**
+     * Checks magic, version and checksum.
+     *
+     * @return number of expressions
+     */
+    private static int readHeader(ByteBuffer in) {
+        int start = in.position();
+        try {
+            if (in.getInt() != MAGIC) {
+                throw new RuntimeException("Not a postfix library");
+            }
+            byte version = in.get();
+            if (version != VERSION) {
+                throw new RuntimeException("Unsupported postfix library version " + version);
+            }
+            int count = getVarint(in);
+            int afterHeader = in.position();
+
+            ByteBuffer scan = in.duplicate();
+            for (int i = 0; i < count; i++) {
+                skipExpression(scan);
+            }
+            int end = scan.position();
+            if ((int) checksum(in, start, end) != scan.getInt()) {
+                throw new RuntimeException("Postfix library checksum mismatch");
+            }
+            in.position(afterHeader);
+            return count;
+        }
+        catch (BufferUnderflowException e) {
+            throw new RuntimeException("Truncated postfix library", e);
+        }
+    }
+
+    private static IList<Token> readExpression(ByteBuffer in) {
+        int length = getVarint(in);
+        IList<Token> expression = new ArrayDeque<>(length);
+        for (int i = 0; i < length; i++) {
+            byte tag = in.get();
+            expression.putBack(switch (tag) {
+                case NUMBER -> TokenNumber.of(unzigzag(getVarint(in)));
+                case PLUS -> TokenPlus.getPlus();
+                case MINUS -> TokenMinus.getMinus();
+                case MULTIPLY -> TokenMultiply.getMultiply();
+                case DIVIDE -> TokenDivide.getDivide();
+                case MIN -> TokenMin.getMin();
+                case MAX -> TokenMax.getMax();
+                case VARIABLE -> {
+                    int nameLength = getVarint(in);
+                    Token variable = new TokenVariable(
+                            new AsciiCharSequence(in, in.position(), in.position() + nameLength).toString());
+                    in.position(in.position() + nameLength);
+                    yield variable;
+                }
+                default -> throw new RuntimeException("Unknown token tag " + tag);
+            });
+        }
+        return expression;
+    }
+
+    private static void skipExpression(ByteBuffer in) {
+        int length = getVarint(in);
+        for (int i = 0; i < length; i++) {
+            byte tag = in.get();
+            if (tag == NUMBER) {
+                getVarint(in);
+            }
+            else if (tag == VARIABLE) {
+                int nameLength = getVarint(in);
+                // a corrupt length would make position() throw IllegalArgumentException instead
+                if (nameLength < 0 || nameLength > in.remaining()) {
+                    throw new BufferUnderflowException();
+                }
+                in.position(in.position() + nameLength);
+            }
+        }
+    }
+
+    private static void putToken(ByteBuffer out, Token token) {
+        switch (token.getType()) {
+            case NUMBER -> {
+                out.put(NUMBER);
+                putVarint(out, zigzag(((TokenNumber<?>) token).getValue().intValue()));
+            }
+            case VARIABLE -> {
+                String name = ((TokenVariable) token).getName();
+                out.put(VARIABLE);
+                putVarint(out, name.length());
+                for (int i = 0; i < name.length(); i++) {
+                    out.put((byte) name.charAt(i));
+                }
+            }
+            case OPERATOR, FUNCTION -> out.put(switch (((IComputer<?, ?>) token).opcode()) {
+                case Opcode.ADD -> PLUS;
+                case Opcode.SUBTRACT -> MINUS;
+                case Opcode.MULTIPLY -> MULTIPLY;
+                case Opcode.DIVIDE -> DIVIDE;
+                case Opcode.MIN -> MIN;
+                case Opcode.MAX -> MAX;
+                default -> throw new RuntimeException("Cannot encode " + token);
+            });
+            default -> throw new RuntimeException("Cannot encode " + token);
+        }
+    }
+
+    private static int tokenSize(Token token) {
+        return switch (token.getType()) {
+            case NUMBER -> 1 + varintSize(zigzag(((TokenNumber<?>) token).getValue().intValue()));
+            case VARIABLE -> {
+                int length = ((TokenVariable) token).getName().length();
+                yield 1 + varintSize(length) + length;
+            }
+            default -> 1;
+        };
+    }
+
+    private static long checksum(ByteBuffer buffer, int start, int end) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().limit(end).position(start));
+        return crc.getValue();
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void putVarint(ByteBuffer out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.put((byte) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    private static int getVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new RuntimeException("Malformed varint");
+    }
+
+    private static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7f) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+}
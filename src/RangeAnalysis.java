@@ -0,0 +1,91 @@
+/**
+ * Interval analysis of postfix programs: from the range of every variable, bounds the value of every
+ * intermediate result and finds the operations that can overflow {@code int}.
+ * Bounds are computed in {@code long}, which holds any sum, difference or product of two ints exactly.
+ */
+final class RangeAnalysis {
+    private RangeAnalysis() {
+    }
+
+    /**
+     * @param minimums smallest value of each variable, indexed by slot
+     * @param maximums largest value of each variable, indexed by slot
+     * @return for each instruction, whether it can overflow; later operations assume overflowing results
+     *         were clamped or rejected, as checked evaluation does
+     */
+    public static boolean[] overflowMask(byte[] opcodes, int[] operands, int maxDepth,
+                                         int[] minimums, int[] maximums) {
+        boolean[] mask = new boolean[opcodes.length];
+        long[] lows = new long[maxDepth];
+        long[] highs = new long[maxDepth];
+        int size = 0;
+        for (int i = 0; i < opcodes.length; i++) {
+            byte opcode = opcodes[i];
+            if (opcode == Opcode.PUSH) {
+                lows[size] = operands[i];
+                highs[size++] = operands[i];
+                continue;
+            }
+            if (opcode == Opcode.LOAD) {
+                lows[size] = minimums[operands[i]];
+                highs[size++] = maximums[operands[i]];
+                continue;
+            }
+            size--;
+            long a = lows[size - 1];
+            long b = highs[size - 1];
+            long c = lows[size];
+            long d = highs[size];
+            long low;
+            long high;
+            switch (opcode) {
+                case Opcode.ADD -> {
+                    low = a + c;
+                    high = b + d;
+                }
+                case Opcode.SUBTRACT -> {
+                    low = a - d;
+                    high = b - c;
+                }
+                case Opcode.MULTIPLY -> {
+                    low = Math.min(Math.min(a * c, a * d), Math.min(b * c, b * d));
+                    high = Math.max(Math.max(a * c, a * d), Math.max(b * c, b * d));
+                }
+                case Opcode.DIVIDE -> {
+                    // the quotient is extreme at the ends of the divisor's negative and positive parts
+                    low = Long.MAX_VALUE;
+                    high = Long.MIN_VALUE;
+                    for (long divisor : new long[] {c, Math.min(d, -1), Math.max(c, 1), d}) {
+                        if (divisor == 0 || divisor < c || divisor > d) {
+                            continue;
+                        }
+                        low = Math.min(low, Math.min(a / divisor, b / divisor));
+                        high = Math.max(high, Math.max(a / divisor, b / divisor));
+                    }
+                    if (low > high) {
+                        // the divisor is always zero, so evaluation fails before any overflow
+                        low = 0;
+                        high = 0;
+                    }
+                }
+                case Opcode.MIN -> {
+                    low = Math.min(a, c);
+                    high = Math.min(b, d);
+                }
+                case Opcode.MAX -> {
+                    low = Math.max(a, c);
+                    high = Math.max(b, d);
+                }
+                default -> throw new RuntimeException("Unknown opcode " + opcode);
+            }
+            mask[i] = low < Integer.MIN_VALUE || high > Integer.MAX_VALUE;
+            lows[size - 1] = clamp(low);
+            highs[size - 1] = clamp(high);
+        }
+        return mask;
+    }
+
+    private static long clamp(long value) {
+        return Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, value));
+    }
+}
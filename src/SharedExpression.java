@@ -0,0 +1,142 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link CompiledExpression} with common subexpressions computed once. The postfix program is hash-consed into
+ * a DAG: structurally equal subtrees, including {@code max ( a , b )} and {@code max ( b , a )} and likewise for
+ * the other commutative operations, become one node. The DAG is emitted as a register program in which every
+ * node is a temporary evaluated once, in dependency order. Results are identical to the original program.
+ * Instances are safe to share between threads.
+ */
+public final class SharedExpression {
+    private static final ThreadLocal<IntEvaluator> EVALUATOR = ThreadLocal.withInitial(IntEvaluator::new);
+    private static final int[] NO_VARIABLES = new int[0];
+    // node ids are packed into 28 bits of the hash-consing key
+    private static final int MAX_PROGRAM_SIZE = 1 << 28;
+
+    private final CompiledExpression expression;
+    private final byte[] opcodes;
+    private final int[] lefts;
+    private final int[] rights;
+
+    private SharedExpression(CompiledExpression expression, byte[] opcodes, int[] lefts, int[] rights) {
+        this.expression = expression;
+        this.opcodes = opcodes;
+        this.lefts = lefts;
+        this.rights = rights;
+    }
+
+    /**
+     * @throws RuntimeException if the program has {@code 2^28} or more instructions
+     */
+    public static SharedExpression of(CompiledExpression expression) {
+        byte[] program = expression.opcodes();
+        int[] operands = expression.operands();
+        if (program.length >= MAX_PROGRAM_SIZE) {
+            throw new RuntimeException("Expression is too large to share subexpressions");
+        }
+        byte[] opcodes = new byte[program.length];
+        int[] lefts = new int[program.length];
+        int[] rights = new int[program.length];
+        int nodes = 0;
+        Map<Long, Integer> ids = new HashMap<>();
+        // DAG node of each operand-stack entry
+        int[] stack = new int[expression.getMaxDepth()];
+        int depth = 0;
+        for (int i = 0; i < program.length; i++) {
+            byte opcode = program[i];
+            int left;
+            int right = 0;
+            long key;
+            if (opcode == Opcode.PUSH || opcode == Opcode.LOAD) {
+                left = operands[i];
+                key = (long) opcode << 32 | (left & 0xffffffffL);
+            }
+            else {
+                left = stack[depth - 2];
+                right = stack[depth - 1];
+                depth -= 2;
+                if (isCommutative(opcode) && left > right) {
+                    int swap = left;
+                    left = right;
+                    right = swap;
+                }
+                // node ids are below the program size, hence below 2^28, so operation keys start at 2^56
+                key = (long) opcode << 56 | (long) left << 28 | right;
+            }
+            Integer id = ids.get(key);
+            if (id == null) {
+                id = nodes;
+                ids.put(key, id);
+                opcodes[nodes] = opcode;
+                lefts[nodes] = left;
+                rights[nodes] = right;
+                nodes++;
+            }
+            stack[depth++] = id;
+        }
+        // the whole expression is never a proper subtree of itself, so the root is always the last node
+        return new SharedExpression(expression, Arrays.copyOf(opcodes, nodes),
+                Arrays.copyOf(lefts, nodes), Arrays.copyOf(rights, nodes));
+    }
+
+    public int evaluate() {
+        return evaluate(NO_VARIABLES);
+    }
+
+    /**
+     * @param vars variable values indexed by slot, see {@link CompiledExpression#getVariables()}
+     */
+    public int evaluate(int[] vars) {
+        if (vars.length < expression.getVariableCount()) {
+            throw new IllegalArgumentException(
+                    "Expected " + expression.getVariableCount() + " variables, got " + vars.length);
+        }
+        return EVALUATOR.get().evaluateRegisters(opcodes, lefts, rights, vars);
+    }
+
+    /**
+     * @return number of distinct subexpressions, each computed once per evaluation
+     */
+    public int getNodeCount() {
+        return opcodes.length;
+    }
+
+    /**
+     * @return instructions of the original program per distinct subexpression, 1 if nothing was shared
+     */
+    public double getDedupRatio() {
+        return (double) expression.size() / opcodes.length;
+    }
+
+    public CompiledExpression getExpression() {
+        return expression;
+    }
+
+    private static boolean isCommutative(byte opcode) {
+        return opcode == Opcode.ADD || opcode == Opcode.MULTIPLY || opcode == Opcode.MIN || opcode == Opcode.MAX;
+    }
+
+    /**
+     * @return the register program, one {@code tK = ...} per line
+     */
+    @Override
+    public String toString() {
+        String[] variables = expression.getVariables();
+        StringBuilder builder = new StringBuilder();
+        for (int k = 0; k < opcodes.length; k++) {
+            builder.append('t').append(k).append(" = ");
+            switch (opcodes[k]) {
+                case Opcode.PUSH -> builder.append(lefts[k]);
+                case Opcode.LOAD -> builder.append(variables[lefts[k]]);
+                case Opcode.MIN, Opcode.MAX -> builder.append(TokenBuffer.computer(opcodes[k]))
+                        .append(" ( t").append(lefts[k]).append(" , t").append(rights[k]).append(" )");
+                default -> builder.append('t').append(lefts[k]).append(' ')
+                        .append(TokenBuffer.computer(opcodes[k])).append(" t").append(rights[k]);
+            }
+            builder.append('\n');
+        }
+        return builder.toString();
+    }
+}
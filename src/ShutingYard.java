@@ -1,92 +1,180 @@
-import java.util.Scanner;
-
 class ShutingYard {
-    public static IList<Token> process(IQueue<Token> tokens) {
-        IStack<Token> temp = new LinkedList<>();
-        IList<Token> output = new LinkedList<>();
+    private static final ThreadLocal<IntEvaluator> EVALUATOR = ThreadLocal.withInitial(IntEvaluator::new);
 
-        /*
-        Details: https://en.wikipedia.org/wiki/Shunting_yard_algorithm
-                 https://ru.wikipedia.org/wiki/Алгоритм_сортировочной_станции
-         */
+    public static IList<Token> process(IQueue<Token> tokens) {
+        PipelineMetrics metrics = PipelineMetrics.active();
+        long start = metrics != null ? System.nanoTime() : 0;
+        IList<Token> output = new ArrayDeque<>();
+        StreamingShuntingYard yard = new StreamingShuntingYard(output::putBack);
         for (Token token : tokens) {
-            if (token.getType() == TokenType.NUMBER) {
-                output.putBack(token);
-            }
-            else if (token.getType() == TokenType.FUNCTION) {
-                temp.push(token);
-            }
-            else if (token.getType() == TokenType.SYMBOL
-                    && ((TokenSymbol) token).getSymbolType() == TokenSymbolType.COMMA) {
-                while (temp.size() != 0 && (
-                        temp.top().getType() != TokenType.SYMBOL
-                        || ((TokenSymbol) temp.top()).getSymbolType() != TokenSymbolType.LEFT_PARENTHESIS
-                )) {
-                    output.putBack(temp.pop());
-                }
-            }
-            else if (token.getType() == TokenType.OPERATOR) {
-                while (temp.size() != 0
-                        && temp.top().getType() == TokenType.OPERATOR
-                        && ((TokenOperator<?>) temp.top()).compareTo((TokenOperator<?>) token) >= 0) {
-                    output.putBack(temp.pop());
+            yard.accept(token);
+        }
+        yard.finish();
+        if (metrics != null) {
+            metrics.process().record(System.nanoTime() - start, output.size(), yard.peakDepth());
+        }
+        return output;
+    }
+
+    /**
+     * Same as {@link #process(IQueue)} over structure-of-arrays buffers, on or off heap.
+     *
+     * @param output cleared, then filled with the postfix program
+     */
+    public static void process(ITokenBuffer tokens, ITokenBuffer output) {
+        process(tokens, output, new TokenBuffer());
+    }
+
+    /**
+     * @param temp scratch buffer used as the operator stack, reusable between calls
+     */
+    public static void process(ITokenBuffer tokens, ITokenBuffer output, ITokenBuffer temp) {
+        PipelineMetrics metrics = PipelineMetrics.active();
+        long start = metrics != null ? System.nanoTime() : 0;
+        int peakDepth = shunt(tokens, output, temp);
+        if (metrics != null) {
+            metrics.process().record(System.nanoTime() - start, output.size(), peakDepth);
+        }
+    }
+
+    /**
+     * @return peak depth of the operator stack
+     */
+    private static int shunt(ITokenBuffer tokens, ITokenBuffer output, ITokenBuffer temp) {
+        int peakDepth = 0;
+        output.clear();
+        output.getVariables().copyFrom(tokens.getVariables());
+        temp.clear();
+        for (int i = 0; i < tokens.size(); i++) {
+            byte kind = tokens.kind(i);
+            int payload = tokens.payload(i);
+            switch (kind) {
+                case TokenKind.NUMBER, TokenKind.VARIABLE -> output.add(kind, payload);
+                case TokenKind.FUNCTION, TokenKind.LEFT_PARENTHESIS -> {
+                    temp.add(kind, payload);
+                    peakDepth = Math.max(peakDepth, temp.size());
                 }
-                temp.push(token);
-            }
-            else if (token.getType() == TokenType.SYMBOL
-                    && ((TokenSymbol) token).getSymbolType() == TokenSymbolType.LEFT_PARENTHESIS) {
-                temp.push(token);
-            }
-            else if (token.getType() == TokenType.SYMBOL
-                    && ((TokenSymbol) token).getSymbolType() == TokenSymbolType.RIGHT_PARENTHESIS) {
-                while (temp.size() != 0 && (
-                        temp.top().getType() != TokenType.SYMBOL 
-                        || ((TokenSymbol) temp.top()).getSymbolType() != TokenSymbolType.LEFT_PARENTHESIS
-                )) {
-                    output.putBack(temp.pop());
+                case TokenKind.COMMA -> popUntilLeftParenthesis(temp, output);
+                case TokenKind.OPERATOR -> {
+                    while (temp.size() != 0
+                            && temp.kind(temp.size() - 1) == TokenKind.OPERATOR
+                            && precedence(temp.payload(temp.size() - 1)) >= precedence(payload)) {
+                        popTo(temp, output);
+                    }
+                    temp.add(kind, payload);
+                    peakDepth = Math.max(peakDepth, temp.size());
                 }
-                temp.pop();  // should be a left parenthesis
-                if (temp.size() != 0 && temp.top().getType() == TokenType.FUNCTION) {
-                    output.putBack(temp.pop());
+                case TokenKind.RIGHT_PARENTHESIS -> {
+                    popUntilLeftParenthesis(temp, output);
+                    temp.removeLast();  // should be a left parenthesis
+                    if (temp.size() != 0 && temp.kind(temp.size() - 1) == TokenKind.FUNCTION) {
+                        popTo(temp, output);
+                    }
                 }
+                default -> throw new RuntimeException("Unknown token kind " + kind);
             }
         }
 
         while (temp.size() != 0) {
-            output.putBack(temp.pop());
+            popTo(temp, output);
         }
+        return peakDepth;
+    }
 
-        return output;
+    private static void popUntilLeftParenthesis(ITokenBuffer temp, ITokenBuffer output) {
+        while (temp.size() != 0 && temp.kind(temp.size() - 1) != TokenKind.LEFT_PARENTHESIS) {
+            popTo(temp, output);
+        }
+    }
+
+    private static void popTo(ITokenBuffer temp, ITokenBuffer output) {
+        output.add(temp.kind(temp.size() - 1), temp.payload(temp.size() - 1));
+        temp.removeLast();
+    }
+
+    private static int precedence(int opcode) {
+        return opcode == Opcode.MULTIPLY || opcode == Opcode.DIVIDE
+                ? OperatorPrecedence.MULTIPLICATION
+                : OperatorPrecedence.ADDITION;
     }
 
-    public static IList<Token> parse(String input) {
-        Scanner scanner = new Scanner(input);
-        IList<Token> tokens = new LinkedList<>();
-        while (scanner.hasNext()) {
-            tokens.putBack(Token.parse(scanner.next()));
+    public static IList<Token> parse(CharSequence input) {
+        PipelineMetrics metrics = PipelineMetrics.active();
+        long start = metrics != null ? System.nanoTime() : 0;
+        Lexer lexer = new Lexer(input);
+        IList<Token> tokens = new ArrayDeque<>();
+        while (lexer.hasNext()) {
+            tokens.putBack(lexer.next());
+        }
+        if (metrics != null) {
+            metrics.parse().record(System.nanoTime() - start, tokens.size(), 0);
         }
         return tokens;
     }
 
+    /**
+     * Same as {@link #parse(CharSequence)} into a structure-of-arrays buffer.
+     *
+     * @param output cleared, then filled with the tokens
+     */
+    public static void parse(CharSequence input, ITokenBuffer output) {
+        PipelineMetrics metrics = PipelineMetrics.active();
+        long start = metrics != null ? System.nanoTime() : 0;
+        output.clear();
+        Lexer lexer = new Lexer(input);
+        while (lexer.hasNext()) {
+            lexer.next(output);
+        }
+        if (metrics != null) {
+            metrics.parse().record(System.nanoTime() - start, output.size(), 0);
+        }
+    }
+
+    /**
+     * @param vars variable values indexed by the buffer's slots
+     */
+    public static int evaluate(ITokenBuffer polish, int[] vars) {
+        PipelineMetrics metrics = PipelineMetrics.active();
+        if (metrics == null) {
+            return EVALUATOR.get().evaluate(polish, vars);
+        }
+        IntEvaluator evaluator = EVALUATOR.get();
+        long start = System.nanoTime();
+        int result = evaluator.evaluate(polish, vars);
+        metrics.evaluate().record(System.nanoTime() - start, polish.size(), evaluator.peakDepth());
+        return result;
+    }
+
     public static int evaluate(IList<Token> polish) {
-        IStack<Token> temp = new LinkedList<>();
+        PipelineMetrics metrics = PipelineMetrics.active();
+        long start = metrics != null ? System.nanoTime() : 0;
+        int peakDepth = 0;
+        IStack<Token> temp = new ArrayDeque<>();
         for (Token token : polish) {
             if (token.getType() == TokenType.NUMBER) {
                 temp.push(token);
+                peakDepth = Math.max(peakDepth, temp.size());
+            }
+            else if (token.getType() == TokenType.VARIABLE) {
+                throw new RuntimeException("Unbound variable " + token);
             }
             else if (token instanceof IComputer<?,?>) {
                 @SuppressWarnings("unchecked")
                 IComputer<Integer, Integer> computer = (IComputer<Integer, Integer>) token;
-                IList<Integer> args = new LinkedList<>();
+                IList<Integer> args = new ArrayDeque<>(computer.argsNumber());
                 for (int i = 0; i < computer.argsNumber(); i++) {
                     @SuppressWarnings("unchecked")
                     int number = ((TokenNumber<Integer>) temp.pop()).getValue();
                     args.putFront(number);
                 }
-                temp.push(new TokenNumber<>(computer.compute(args)));
+                temp.push(TokenNumber.of(computer.compute(args)));
             }
         }
         //noinspection unchecked
-        return ((TokenNumber<Integer>) temp.pop()).getValue();
+        int result = ((TokenNumber<Integer>) temp.pop()).getValue();
+        if (metrics != null) {
+            metrics.evaluate().record(System.nanoTime() - start, polish.size(), peakDepth);
+        }
+        return result;
     }
 }
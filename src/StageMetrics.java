@@ -0,0 +1,42 @@
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of one pipeline stage, safe to update from any number of threads without locking.
+ */
+final class StageMetrics {
+    private final String name;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder tokens = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAccumulator peakDepth = new LongAccumulator(Math::max, 0);
+
+    StageMetrics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @param nanos  duration of the call
+     * @param tokens number of tokens the call produced or consumed
+     * @param depth  deepest stack the call used, or 0 if the stage has none
+     */
+    public void record(long nanos, int tokens, int depth) {
+        calls.increment();
+        this.tokens.add(tokens);
+        latency.record(nanos);
+        peakDepth.accumulate(depth);
+    }
+
+    public StageSnapshot snapshot() {
+        return new StageSnapshot(name, calls.sum(), tokens.sum(), latency.getMean(),
+                latency.getValueAtPercentile(50), latency.getValueAtPercentile(90),
+                latency.getValueAtPercentile(99), latency.getMax(), peakDepth.get());
+    }
+
+    public void reset() {
+        calls.reset();
+        tokens.reset();
+        latency.reset();
+        peakDepth.reset();
+    }
+}
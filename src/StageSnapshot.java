@@ -0,0 +1,82 @@
+import java.util.Locale;
+
+/**
+ * Point-in-time copy of the metrics of one pipeline stage, see {@link PipelineMetrics}.
+ * Latencies are in nanoseconds.
+ */
+public final class StageSnapshot {
+    private final String stage;
+    private final long count;
+    private final long tokens;
+    private final double meanNanos;
+    private final long p50Nanos;
+    private final long p90Nanos;
+    private final long p99Nanos;
+    private final long maxNanos;
+    private final long peakDepth;
+
+    StageSnapshot(String stage, long count, long tokens, double meanNanos,
+                  long p50Nanos, long p90Nanos, long p99Nanos, long maxNanos, long peakDepth) {
+        this.stage = stage;
+        this.count = count;
+        this.tokens = tokens;
+        this.meanNanos = meanNanos;
+        this.p50Nanos = p50Nanos;
+        this.p90Nanos = p90Nanos;
+        this.p99Nanos = p99Nanos;
+        this.maxNanos = maxNanos;
+        this.peakDepth = peakDepth;
+    }
+
+    public String getStage() {
+        return stage;
+    }
+
+    /**
+     * @return number of completed calls
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return total number of tokens over all calls
+     */
+    public long getTokens() {
+        return tokens;
+    }
+
+    public double getMeanNanos() {
+        return meanNanos;
+    }
+
+    public long getP50Nanos() {
+        return p50Nanos;
+    }
+
+    public long getP90Nanos() {
+        return p90Nanos;
+    }
+
+    public long getP99Nanos() {
+        return p99Nanos;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    /**
+     * @return deepest operator stack (process) or operand stack (evaluate) seen, 0 for parse
+     */
+    public long getPeakDepth() {
+        return peakDepth;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT,
+                "%s: count=%d tokens=%d mean=%.1fns p50=%dns p90=%dns p99=%dns max=%dns peakDepth=%d",
+                stage, count, tokens, meanNanos, p50Nanos, p90Nanos, p99Nanos, maxNanos, peakDepth);
+    }
+}
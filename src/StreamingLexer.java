@@ -0,0 +1,94 @@
+import java.util.function.Consumer;
+
+/**
+ * Push-based counterpart of {@link Lexer}: characters are fed in arbitrary chunks and
+ * every token is passed to the sink as soon as its last character has been seen.
+ * Memory use is bounded by the length of the longest word.
+ */
+final class StreamingLexer {
+    private final Consumer<Token> sink;
+    private final StringBuilder word = new StringBuilder();
+    private boolean inNumber = false;
+    private int number;
+    private long position = 0;
+    private long offset = -1;
+
+    StreamingLexer(Consumer<Token> sink) {
+        this.sink = sink;
+    }
+
+    public void feed(char[] chars, int from, int length) {
+        for (int i = from; i < from + length; i++) {
+            feed(chars[i]);
+        }
+    }
+
+    public void feed(char c) {
+        if (inNumber) {
+            if (Lexer.isDigit(c)) {
+                int digit = c - '0';
+                if (number > (Integer.MAX_VALUE - digit) / 10) {
+                    throw new RuntimeException("Number is too large at offset " + offset);
+                }
+                number = number * 10 + digit;
+                position++;
+                return;
+            }
+            inNumber = false;
+            sink.accept(TokenNumber.of(number));
+        }
+        else if (word.length() != 0) {
+            if (Lexer.isWordPart(c)) {
+                word.append(c);
+                position++;
+                return;
+            }
+            flushWord();
+        }
+
+        if (Lexer.isDigit(c)) {
+            offset = position;
+            inNumber = true;
+            number = c - '0';
+        }
+        else if (Lexer.isLetter(c) || c == '_') {
+            offset = position;
+            word.append(c);
+        }
+        else if (!Character.isWhitespace(c)) {
+            offset = position;
+            Token token = Lexer.punctuation(c);
+            if (token == null) {
+                throw new RuntimeException("Unknown token at offset " + offset);
+            }
+            sink.accept(token);
+        }
+        position++;
+    }
+
+    /**
+     * Emits the token still being read, if any. Call once after the last character.
+     */
+    public void finish() {
+        if (inNumber) {
+            inNumber = false;
+            sink.accept(TokenNumber.of(number));
+        }
+        else if (word.length() != 0) {
+            flushWord();
+        }
+    }
+
+    /**
+     * @return character offset of the token passed to the sink last, or -1 before the first one
+     */
+    public long offset() {
+        return offset;
+    }
+
+    private void flushWord() {
+        Token token = Lexer.word(word, 0, word.length());
+        word.setLength(0);
+        sink.accept(token);
+    }
+}
@@ -0,0 +1,120 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Push-based shunting-yard: infix tokens go in one at a time and postfix tokens are passed to
+ * the sink as soon as they are final. Only the operator stack is kept, so memory is bounded by
+ * the nesting of the expression rather than its length.
+ */
+final class StreamingShuntingYard {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Consumer<Token> sink;
+    private final IStack<Token> temp = new ArrayDeque<>();
+    private int peakDepth = 0;
+
+    StreamingShuntingYard(Consumer<Token> sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * Reads an infix expression from the reader and passes its postfix form to the sink.
+     */
+    public static void process(Reader reader, Consumer<Token> sink) throws IOException {
+        StreamingShuntingYard yard = new StreamingShuntingYard(sink);
+        StreamingLexer lexer = new StreamingLexer(yard::accept);
+        char[] buffer = new char[BUFFER_SIZE];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            lexer.feed(buffer, 0, read);
+        }
+        lexer.finish();
+        yard.finish();
+    }
+
+    /**
+     * Same as {@link #process(Reader, Consumer)} for an ASCII byte channel.
+     */
+    public static void process(ReadableByteChannel channel, Consumer<Token> sink) throws IOException {
+        process(Channels.newReader(channel, StandardCharsets.US_ASCII), sink);
+    }
+
+    public void accept(Token token) {
+        /*
+        Details: https://en.wikipedia.org/wiki/Shunting_yard_algorithm
+                 https://ru.wikipedia.org/wiki/Алгоритм_сортировочной_станции
+         */
+        if (token.getType() == TokenType.NUMBER || token.getType() == TokenType.VARIABLE) {
+            sink.accept(token);
+        }
+        else if (token.getType() == TokenType.FUNCTION) {
+            push(token);
+        }
+        else if (token.getType() == TokenType.SYMBOL
+                && ((TokenSymbol) token).getSymbolType() == TokenSymbolType.COMMA) {
+            while (temp.size() != 0 && (
+                    temp.top().getType() != TokenType.SYMBOL
+                    || ((TokenSymbol) temp.top()).getSymbolType() != TokenSymbolType.LEFT_PARENTHESIS
+            )) {
+                sink.accept(temp.pop());
+            }
+        }
+        else if (token.getType() == TokenType.OPERATOR) {
+            while (temp.size() != 0
+                    && temp.top().getType() == TokenType.OPERATOR
+                    && ((TokenOperator<?>) temp.top()).compareTo((TokenOperator<?>) token) >= 0) {
+                sink.accept(temp.pop());
+            }
+            push(token);
+        }
+        else if (token.getType() == TokenType.SYMBOL
+                && ((TokenSymbol) token).getSymbolType() == TokenSymbolType.LEFT_PARENTHESIS) {
+            push(token);
+        }
+        else if (token.getType() == TokenType.SYMBOL
+                && ((TokenSymbol) token).getSymbolType() == TokenSymbolType.RIGHT_PARENTHESIS) {
+            while (temp.size() != 0 && (
+                    temp.top().getType() != TokenType.SYMBOL
+                    || ((TokenSymbol) temp.top()).getSymbolType() != TokenSymbolType.LEFT_PARENTHESIS
+            )) {
+                sink.accept(temp.pop());
+            }
+            temp.pop();  // should be a left parenthesis
+            if (temp.size() != 0 && temp.top().getType() == TokenType.FUNCTION) {
+                sink.accept(temp.pop());
+            }
+        }
+    }
+
+    /**
+     * Flushes the remaining operators. Call once after the last token.
+     */
+    public void finish() {
+        while (temp.size() != 0) {
+            sink.accept(temp.pop());
+        }
+    }
+
+    /**
+     * @return current depth of the operator stack
+     */
+    public int depth() {
+        return temp.size();
+    }
+
+    /**
+     * @return deepest the operator stack has been so far
+     */
+    public int peakDepth() {
+        return peakDepth;
+    }
+
+    private void push(Token token) {
+        temp.push(token);
+        peakDepth = Math.max(peakDepth, temp.size());
+    }
+}
@@ -12,23 +12,35 @@ public abstract class Token {
     public abstract String toString();
 
     public static Token parse(String s) {
-        return switch (TokenType.parse(s)) {
-            case NUMBER -> new TokenNumber<>(Integer.parseInt(s));
-            case SYMBOL -> new TokenSymbol(TokenSymbolType.parse(s));
-            case OPERATOR -> TokenOperator.parse(s);
-            case FUNCTION -> TokenFunction.parse(s);
-        };
+        Lexer lexer = new Lexer(s);
+        Token token = lexer.next();
+        if (lexer.hasNext()) {
+            throw new RuntimeException("Unknown token");
+        }
+        return token;
     }
 }
 
 class TokenSymbol extends Token {
+    static final TokenSymbol COMMA = new TokenSymbol(TokenSymbolType.COMMA);
+    static final TokenSymbol LEFT_PARENTHESIS = new TokenSymbol(TokenSymbolType.LEFT_PARENTHESIS);
+    static final TokenSymbol RIGHT_PARENTHESIS = new TokenSymbol(TokenSymbolType.RIGHT_PARENTHESIS);
+
     private final TokenSymbolType type;
 
-    protected TokenSymbol(TokenSymbolType symbol) {
+    private TokenSymbol(TokenSymbolType symbol) {
         super(TokenType.SYMBOL);
         this.type = symbol;
     }
 
+    static TokenSymbol of(TokenSymbolType symbol) {
+        return switch (symbol) {
+            case COMMA -> COMMA;
+            case LEFT_PARENTHESIS -> LEFT_PARENTHESIS;
+            case RIGHT_PARENTHESIS -> RIGHT_PARENTHESIS;
+        };
+    }
+
     public TokenSymbolType getSymbolType() {
         return type;
     }
@@ -40,6 +52,16 @@ class TokenSymbol extends Token {
 }
 
 class TokenNumber<T extends Number> extends Token {
+    private static final int CACHE_LOW = -128;
+    private static final int CACHE_HIGH = 1023;
+    private static final TokenNumber<?>[] CACHE = new TokenNumber<?>[CACHE_HIGH - CACHE_LOW + 1];
+
+    static {
+        for (int i = 0; i < CACHE.length; i++) {
+            CACHE[i] = new TokenNumber<>(i + CACHE_LOW);
+        }
+    }
+
     private final T value;
 
     protected TokenNumber(T value) {
@@ -47,6 +69,18 @@ class TokenNumber<T extends Number> extends Token {
         this.value = value;
     }
 
+    /**
+     * @return shared token for small values, a new one otherwise
+     */
+    static TokenNumber<Integer> of(int value) {
+        if (value >= CACHE_LOW && value <= CACHE_HIGH) {
+            @SuppressWarnings("unchecked")
+            TokenNumber<Integer> cached = (TokenNumber<Integer>) CACHE[value - CACHE_LOW];
+            return cached;
+        }
+        return new TokenNumber<>(value);
+    }
+
     @Override
     public String toString() {
         return value.toString();
@@ -57,9 +91,32 @@ class TokenNumber<T extends Number> extends Token {
     }
 }
 
+class TokenVariable extends Token {
+    private final String name;
+
+    protected TokenVariable(String name) {
+        super(TokenType.VARIABLE);
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
+
 interface IComputer<R, T> {
     int argsNumber();
 
+    /**
+     * @return instruction used for this computer by the primitive evaluators, see {@link Opcode}
+     */
+    byte opcode();
+
     R compute(IList<T> args);
 }
 
@@ -86,10 +143,7 @@ abstract class TokenOperator<T> extends Token implements IComputer<T, T>, Compar
     }
 
     public static TokenOperator<?> parse(String s) {
-        if (s.matches("[+\\-*/]")) {
-            return TokenBinaryOperator.parse(s);
-        }
-        throw new RuntimeException("Unknown operator");
+        return TokenBinaryOperator.parse(s);
     }
 }
 
@@ -135,17 +189,19 @@ class TokenPlus extends TokenBinaryOperator<Integer> {
         return left + right;
     }
 
+    @Override
+    public byte opcode() {
+        return Opcode.ADD;
+    }
+
     @Override
     public String toString() {
         return SYMBOL;
     }
 
-    static TokenPlus singleton = null;
+    private static final TokenPlus singleton = new TokenPlus();
 
     static TokenPlus getPlus() {
-        if (singleton == null) {
-            return singleton = new TokenPlus();
-        }
         return singleton;
     }
 }
@@ -162,17 +218,19 @@ class TokenMinus extends TokenBinaryOperator<Integer> {
         return left - right;
     }
 
+    @Override
+    public byte opcode() {
+        return Opcode.SUBTRACT;
+    }
+
     @Override
     public String toString() {
         return SYMBOL;
     }
 
-    static TokenMinus singleton = null;
+    private static final TokenMinus singleton = new TokenMinus();
 
     static TokenMinus getMinus() {
-        if (singleton == null) {
-            return singleton = new TokenMinus();
-        }
         return singleton;
     }
 }
@@ -189,17 +247,19 @@ class TokenMultiply extends TokenBinaryOperator<Integer> {
         return left * right;
     }
 
+    @Override
+    public byte opcode() {
+        return Opcode.MULTIPLY;
+    }
+
     @Override
     public String toString() {
         return SYMBOL;
     }
 
-    static TokenMultiply singleton = null;
+    private static final TokenMultiply singleton = new TokenMultiply();
 
     static TokenMultiply getMultiply() {
-        if (singleton == null) {
-            return singleton = new TokenMultiply();
-        }
         return singleton;
     }
 }
@@ -216,17 +276,19 @@ class TokenDivide extends TokenBinaryOperator<Integer> {
         return left / right;
     }
 
+    @Override
+    public byte opcode() {
+        return Opcode.DIVIDE;
+    }
+
     @Override
     public String toString() {
         return SYMBOL;
     }
 
-    static TokenDivide singleton = null;
+    private static final TokenDivide singleton = new TokenDivide();
 
     static TokenDivide getDivide() {
-        if (singleton == null) {
-            return singleton = new TokenDivide();
-        }
         return singleton;
     }
 }
@@ -255,6 +317,11 @@ class TokenMin extends TokenFunction<Integer, Integer> {
         return 2;
     }
 
+    @Override
+    public byte opcode() {
+        return Opcode.MIN;
+    }
+
     @Override
     public String toString() {
         return SYMBOL;
@@ -267,12 +334,9 @@ class TokenMin extends TokenFunction<Integer, Integer> {
         return Math.min(left, right);
     }
 
-    static TokenMin singleton = null;
+    private static final TokenMin singleton = new TokenMin();
 
     static TokenMin getMin() {
-        if (singleton == null) {
-            return singleton = new TokenMin();
-        }
         return singleton;
     }
 }
@@ -285,6 +349,11 @@ class TokenMax extends TokenFunction<Integer, Integer> {
         return 2;
     }
 
+    @Override
+    public byte opcode() {
+        return Opcode.MAX;
+    }
+
     @Override
     public String toString() {
         return SYMBOL;
@@ -297,12 +366,9 @@ class TokenMax extends TokenFunction<Integer, Integer> {
         return Math.max(left, right);
     }
 
-    static TokenMax singleton = null;
+    private static final TokenMax singleton = new TokenMax();
 
     static TokenMax getMax() {
-        if (singleton == null) {
-            return singleton = new TokenMax();
-        }
         return singleton;
     }
 }
@@ -0,0 +1,112 @@
+import java.util.Arrays;
+
+/**
+ * Structure-of-arrays token list: kinds in a {@code byte[]} and payloads in an {@code int[]}.
+ * The payload is the value of a number, the slot of a variable and the {@link Opcode} of an
+ * operator or function. Variable names are kept once per buffer in a slot table.
+ * Growable, and reusable after {@link #clear()} without reallocating.
+ */
+final class TokenBuffer implements ITokenBuffer {
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private byte[] kinds;
+    private int[] payloads;
+    private int size = 0;
+    private final VariableTable variables = new VariableTable();
+
+    TokenBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    TokenBuffer(int capacity) {
+        kinds = new byte[Math.max(capacity, 1)];
+        payloads = new int[kinds.length];
+    }
+
+    @Override
+    public void add(byte kind, int payload) {
+        if (size == kinds.length) {
+            kinds = Arrays.copyOf(kinds, size * 2);
+            payloads = Arrays.copyOf(payloads, size * 2);
+        }
+        kinds[size] = kind;
+        payloads[size] = payload;
+        size++;
+    }
+
+    public void add(Token token) {
+        switch (token.getType()) {
+            case NUMBER -> add(TokenKind.NUMBER, ((TokenNumber<?>) token).getValue().intValue());
+            case VARIABLE -> {
+                String name = ((TokenVariable) token).getName();
+                add(TokenKind.VARIABLE, variables.slot(name, 0, name.length()));
+            }
+            case OPERATOR -> add(TokenKind.OPERATOR, ((IComputer<?, ?>) token).opcode());
+            case FUNCTION -> add(TokenKind.FUNCTION, ((IComputer<?, ?>) token).opcode());
+            case SYMBOL -> add(switch (((TokenSymbol) token).getSymbolType()) {
+                case COMMA -> TokenKind.COMMA;
+                case LEFT_PARENTHESIS -> TokenKind.LEFT_PARENTHESIS;
+                case RIGHT_PARENTHESIS -> TokenKind.RIGHT_PARENTHESIS;
+            }, 0);
+        }
+    }
+
+    @Override
+    public byte kind(int i) {
+        return kinds[i];
+    }
+
+    @Override
+    public int payload(int i) {
+        return payloads[i];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void removeLast() {
+        if (size == 0) {
+            throw new RuntimeException("Buffer is empty");
+        }
+        size--;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        variables.clear();
+    }
+
+    @Override
+    public VariableTable getVariables() {
+        return variables;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            if (i != 0) {
+                builder.append(' ');
+            }
+            builder.append(get(i));
+        }
+        return builder.toString();
+    }
+
+    static Token computer(byte opcode) {
+        return switch (opcode) {
+            case Opcode.ADD -> TokenPlus.getPlus();
+            case Opcode.SUBTRACT -> TokenMinus.getMinus();
+            case Opcode.MULTIPLY -> TokenMultiply.getMultiply();
+            case Opcode.DIVIDE -> TokenDivide.getDivide();
+            case Opcode.MIN -> TokenMin.getMin();
+            case Opcode.MAX -> TokenMax.getMax();
+            default -> throw new RuntimeException("Unknown opcode " + opcode);
+        };
+    }
+
+}
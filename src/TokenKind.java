@@ -0,0 +1,12 @@
+/**
+ * Kinds of the tokens stored in an {@link ITokenBuffer}.
+ */
+class TokenKind {
+    public static final byte NUMBER = 0;
+    public static final byte VARIABLE = NUMBER + 1;
+    public static final byte OPERATOR = VARIABLE + 1;
+    public static final byte FUNCTION = OPERATOR + 1;
+    public static final byte COMMA = FUNCTION + 1;
+    public static final byte LEFT_PARENTHESIS = COMMA + 1;
+    public static final byte RIGHT_PARENTHESIS = LEFT_PARENTHESIS + 1;
+}
@@ -1,22 +1,12 @@
 public enum TokenType {
-    NUMBER("[0-9]+"),
-    FUNCTION("min|max"),
-    OPERATOR("[+\\-*/]"),
-    SYMBOL(",|\\(|\\)");
-
-    final String regexp;
-
-    TokenType(String pattern) {
-        regexp = pattern;
-    }
+    NUMBER,
+    VARIABLE,
+    FUNCTION,
+    OPERATOR,
+    SYMBOL;
 
     public static TokenType parse(String s) {
-        for (TokenType type : TokenType.values()) {
-            if (s.matches(type.regexp)) {
-                return type;
-            }
-        }
-        throw new RuntimeException("Unknown token");
+        return Token.parse(s).getType();
     }
 }
 
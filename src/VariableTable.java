@@ -0,0 +1,121 @@
+import java.util.Arrays;
+
+/**
+ * Variable names of a token buffer, indexed by slot in order of registration.
+ * Names are found through an open-addressing hash index over the characters of the lexed region,
+ * so looking up a name that is already registered builds no {@code String}.
+ */
+final class VariableTable {
+    private String[] names = new String[4];
+    private int[] hashes = new int[4];
+    private int size = 0;
+    // slot + 1 of the name hashed to each position, 0 if empty; the length is a power of two
+    private int[] index = new int[8];
+
+    /**
+     * @return slot of the variable named {@code name[start, end)}, registering it if it is new
+     */
+    public int slot(CharSequence name, int start, int end) {
+        int hash = hash(name, start, end);
+        int mask = index.length - 1;
+        int position = mix(hash) & mask;
+        while (index[position] != 0) {
+            int slot = index[position] - 1;
+            if (hashes[slot] == hash && regionEquals(names[slot], name, start, end)) {
+                return slot;
+            }
+            position = (position + 1) & mask;
+        }
+
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+        names[size] = name.subSequence(start, end).toString();
+        hashes[size] = hash;
+        index[position] = size + 1;
+        size++;
+        if (size * 2 > index.length) {
+            rehash(index.length * 2);
+        }
+        return size - 1;
+    }
+
+    public String name(int slot) {
+        if (slot >= size) {
+            throw new IndexOutOfBoundsException(slot);
+        }
+        return names[slot];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(names, 0, size, null);
+        Arrays.fill(index, 0);
+        size = 0;
+    }
+
+    /**
+     * Replaces the contents of this table with those of {@code other}.
+     */
+    public void copyFrom(VariableTable other) {
+        if (other == this) {
+            return;
+        }
+        clear();
+        if (names.length < other.size) {
+            names = new String[other.names.length];
+            hashes = new int[other.names.length];
+        }
+        System.arraycopy(other.names, 0, names, 0, other.size);
+        System.arraycopy(other.hashes, 0, hashes, 0, other.size);
+        size = other.size;
+        if (index.length < other.index.length) {
+            index = new int[other.index.length];
+        }
+        rehash(index.length);
+    }
+
+    private void rehash(int capacity) {
+        index = capacity == index.length ? index : new int[capacity];
+        Arrays.fill(index, 0);
+        int mask = capacity - 1;
+        for (int slot = 0; slot < size; slot++) {
+            int position = mix(hashes[slot]) & mask;
+            while (index[position] != 0) {
+                position = (position + 1) & mask;
+            }
+            index[position] = slot + 1;
+        }
+    }
+
+    /**
+     * Same value as {@link String#hashCode()} of the region.
+     */
+    private static int hash(CharSequence name, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + name.charAt(i);
+        }
+        return hash;
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean regionEquals(String s, CharSequence name, int start, int end) {
+        if (s.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) != name.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,131 @@
+import java.util.Random;
+
+/**
+ * Checks that programs generated by {@link BytecodeCompiler} agree with {@link CompiledExpression#evaluate(int[])},
+ * and that expressions too large for the JIT fall back to the interpreter.
+ * Dependency-free: exits with a non-zero status on the first violated expectation.
+ * <p>
+ * Usage: {@code java -cp out BytecodeCompilerTest}
+ */
+public class BytecodeCompilerTest {
+    private static final String[] VARIABLES = {"a", "b", "c"};
+    // one constant for each of iconst, bipush, sipush and ldc_w
+    private static final int[] CONSTANTS = {0, 5, 100, 1000, 100000, Integer.MAX_VALUE};
+    private static final String[] OPERATORS = {"+", "-", "*", "/"};
+
+    public static void main(String[] args) {
+        agreesWithInterpreter();
+        generatesClassBelowLimit();
+        fallsBackAboveLimit();
+        checksVariableCount();
+        System.out.println("BytecodeCompiler: OK");
+    }
+
+    private static void agreesWithInterpreter() {
+        Random random = new Random(42);
+        for (int round = 0; round < 2000; round++) {
+            String source = expression(random, 1 + random.nextInt(30), 3);
+            CompiledExpression expression = CompiledExpression.compile(source, VARIABLES);
+            IProgram program = BytecodeCompiler.compile(expression);
+            check(isGenerated(program), "not generated: " + source);
+            for (int i = 0; i < 10; i++) {
+                int[] vars = {random.nextInt(7) - 3, random.nextInt(), random.nextInt(1000)};
+                String expected = outcome(expression::evaluate, vars);
+                String actual = outcome(program, vars);
+                check(expected.equals(actual), source + ": expected " + expected + ", got " + actual);
+            }
+        }
+    }
+
+    private static void generatesClassBelowLimit() {
+        // each further term is aload_1, iconst_0, iaload and iadd, after a 6 byte check of the variable count
+        int terms = (BytecodeCompiler.HUGE_METHOD_LIMIT - 6 - 4) / 4;
+        CompiledExpression expression = CompiledExpression.compile(sum(terms), VARIABLES);
+        IProgram program = BytecodeCompiler.compile(expression);
+        check(isGenerated(program), "expression of " + terms + " terms was not generated");
+        check(program.evaluate(new int[]{3, 0, 0}) == 3 * terms, "sum of " + terms + " terms");
+    }
+
+    private static void fallsBackAboveLimit() {
+        int terms = BytecodeCompiler.HUGE_METHOD_LIMIT / 4 + 1;
+        CompiledExpression expression = CompiledExpression.compile(sum(terms), VARIABLES);
+        IProgram program = BytecodeCompiler.compile(expression);
+        check(!isGenerated(program), "expression of " + terms + " terms was generated");
+        check(program.evaluate(new int[]{3, 0, 0}) == 3 * terms, "sum of " + terms + " terms");
+    }
+
+    private static void checksVariableCount() {
+        CompiledExpression expression = CompiledExpression.compile("a + c", VARIABLES);
+        IProgram program = BytecodeCompiler.compile(expression);
+        IProgram fallback = expression::evaluate;
+        check(isGenerated(program), "not generated");
+        check(program.evaluate(new int[]{1, 2, 3, 4}) == 4, "extra variables are ignored");
+        for (int[] vars : new int[][]{{}, {1, 2}}) {
+            String expected = error(fallback, vars);
+            String actual = error(program, vars);
+            check(expected.startsWith("Expected 3 variables") && expected.equals(actual),
+                    vars.length + " variables: expected \"" + expected + "\", got \"" + actual + "\"");
+        }
+    }
+
+    private static String error(IProgram program, int[] vars) {
+        try {
+            program.evaluate(vars);
+        }
+        catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+        return "";
+    }
+
+    private static boolean isGenerated(IProgram program) {
+        return program.getClass().getName().startsWith("GeneratedProgram/");
+    }
+
+    private static String sum(int terms) {
+        StringBuilder builder = new StringBuilder("a");
+        for (int i = 1; i < terms; i++) {
+            builder.append(" + a");
+        }
+        return builder.toString();
+    }
+
+    private static String expression(Random random, int terms, int depth) {
+        StringBuilder builder = new StringBuilder(operand(random, depth));
+        for (int i = 1; i < terms; i++) {
+            builder.append(' ').append(OPERATORS[random.nextInt(OPERATORS.length)]).append(' ')
+                    .append(operand(random, depth));
+        }
+        return builder.toString();
+    }
+
+    private static String operand(Random random, int depth) {
+        int choice = random.nextInt(depth > 0 ? 5 : 3);
+        if (choice == 0) {
+            return Integer.toString(CONSTANTS[random.nextInt(CONSTANTS.length)]);
+        }
+        if (choice <= 2) {
+            return VARIABLES[random.nextInt(VARIABLES.length)];
+        }
+        if (choice == 3) {
+            return "( " + expression(random, 1 + random.nextInt(5), depth - 1) + " )";
+        }
+        return (random.nextBoolean() ? "max" : "min") + " ( " + expression(random, 1 + random.nextInt(3), depth - 1)
+                + " , " + expression(random, 1 + random.nextInt(3), depth - 1) + " )";
+    }
+
+    private static String outcome(IProgram program, int[] vars) {
+        try {
+            return Integer.toString(program.evaluate(vars));
+        }
+        catch (ArithmeticException e) {
+            return "ArithmeticException";
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
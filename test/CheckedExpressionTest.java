@@ -0,0 +1,258 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Checks {@link CheckedExpression} against a reference that checks every operation in {@code long} arithmetic,
+ * over random variable ranges: range analysis must never skip an operation that can overflow.
+ * Also covers overflow exactly at the interval bounds, {@code MIN_VALUE / -1} and division by zero.
+ * Dependency-free: exits with a non-zero status on the first violated expectation.
+ * <p>
+ * Usage: {@code java -cp out CheckedExpressionTest}
+ */
+public class CheckedExpressionTest {
+    private static final String OVERFLOW = "overflow";
+    private static final String DIVISION_BY_ZERO = "division by zero";
+
+    public static void main(String[] args) {
+        agreesWithReference();
+        overflowsAtIntervalBounds();
+        dividesMinValueByMinusOne();
+        divisionByZeroAlwaysThrows();
+        rejectsValuesOutsideRanges();
+        System.out.println("CheckedExpression: OK");
+    }
+
+    private static void agreesWithReference() {
+        RandomExpressions expressions = new RandomExpressions(23);
+        Random random = expressions.random();
+        for (int round = 0; round < 3000; round++) {
+            String source = expressions.expression(1 + random.nextInt(12), 2);
+            CompiledExpression expression = CompiledExpression.compile(source, RandomExpressions.VARIABLES);
+            int[] minimums = new int[RandomExpressions.VARIABLES.length];
+            int[] maximums = new int[minimums.length];
+            for (int i = 0; i < minimums.length; i++) {
+                long[] range = range(random);
+                minimums[i] = (int) range[0];
+                maximums[i] = (int) range[1];
+            }
+            for (CheckedExpression.OverflowPolicy policy : CheckedExpression.OverflowPolicy.values()) {
+                CheckedExpression checked = CheckedExpression.of(expression, policy, minimums, maximums);
+                for (int i = 0; i < 10; i++) {
+                    int[] vars = new int[minimums.length];
+                    for (int j = 0; j < vars.length; j++) {
+                        vars[j] = value(random, minimums[j], maximums[j]);
+                    }
+                    String expected = reference(expression, vars, policy);
+                    String actual = outcome(checked, vars);
+                    check(expected.equals(actual), source + " " + policy + " with " + describe(vars)
+                            + ": expected " + expected + ", got " + actual);
+                    if (!checked.isOverflowPossible() && !expected.equals(DIVISION_BY_ZERO)) {
+                        check(expected.equals(Integer.toString(expression.evaluate(vars))),
+                                source + " was proved safe but wraps around with " + describe(vars));
+                    }
+                }
+            }
+        }
+    }
+
+    private static void overflowsAtIntervalBounds() {
+        int max = Integer.MAX_VALUE;
+        int min = Integer.MIN_VALUE;
+        expectSafe("a + 10", max - 10, max - 10, max);
+        expectOverflow("a + 10", max - 10, max - 9, max - 9, max);
+        expectSafe("a - 1", min + 1, min + 1, min);
+        expectOverflow("a - 1", min, min + 1, min, min);
+        expectSafe("a * a", -46340, 46340, 46340 * 46340);
+        expectOverflow("a * a", -46341, 46340, -46341, max);
+        expectSafe("0 - a", min + 1, max, -max);
+        expectOverflow("0 - a", min, max, min, max);
+    }
+
+    private static void dividesMinValueByMinusOne() {
+        int min = Integer.MIN_VALUE;
+        CompiledExpression expression = CompiledExpression.compile("a / b", RandomExpressions.VARIABLES);
+        int[] vars = {min, -1, 0};
+        int[] minimums = {min, -1, 0};
+        int[] maximums = {min, -1, 0};
+        CheckedExpression thrown = CheckedExpression.of(expression, CheckedExpression.OverflowPolicy.THROW,
+                minimums, maximums);
+        check(thrown.isOverflowPossible(), "MIN_VALUE / -1 was proved safe");
+        check(outcome(thrown, vars).equals(OVERFLOW), "MIN_VALUE / -1 did not throw");
+        CheckedExpression saturated = CheckedExpression.of(expression, CheckedExpression.OverflowPolicy.SATURATE,
+                minimums, maximums);
+        check(saturated.evaluate(vars) == Integer.MAX_VALUE, "MIN_VALUE / -1 did not saturate");
+        // no divisor of -1 once the dividend excludes MIN_VALUE
+        CheckedExpression safe = CheckedExpression.of(expression, CheckedExpression.OverflowPolicy.THROW,
+                new int[] {min + 1, min, 0}, new int[] {Integer.MAX_VALUE, Integer.MAX_VALUE, 0});
+        check(!safe.isOverflowPossible(), "division without MIN_VALUE / -1 was not proved safe");
+    }
+
+    private static void divisionByZeroAlwaysThrows() {
+        CompiledExpression expression = CompiledExpression.compile("a / b + c", RandomExpressions.VARIABLES);
+        for (CheckedExpression.OverflowPolicy policy : CheckedExpression.OverflowPolicy.values()) {
+            CheckedExpression onlyZero = CheckedExpression.of(expression, policy,
+                    new int[] {-5, 0, 0}, new int[] {5, 0, 0});
+            check(outcome(onlyZero, new int[] {3, 0, 0}).equals(DIVISION_BY_ZERO), policy + " divisor [0, 0]");
+            CheckedExpression acrossZero = CheckedExpression.of(expression, policy,
+                    new int[] {Integer.MIN_VALUE, -1, Integer.MIN_VALUE},
+                    new int[] {Integer.MAX_VALUE, 1, Integer.MAX_VALUE});
+            check(outcome(acrossZero, new int[] {Integer.MIN_VALUE, 0, 1}).equals(DIVISION_BY_ZERO),
+                    policy + " divisor [-1, 1]");
+        }
+    }
+
+    private static void rejectsValuesOutsideRanges() {
+        CompiledExpression expression = CompiledExpression.compile("a + b", "a", "b");
+        CheckedExpression checked = CheckedExpression.of(expression, CheckedExpression.OverflowPolicy.THROW,
+                new int[] {0, 0}, new int[] {10, 10});
+        try {
+            checked.evaluate(new int[] {11, 0});
+        }
+        catch (IllegalArgumentException e) {
+            return;
+        }
+        throw new AssertionError("a value outside its range was accepted");
+    }
+
+    private static void expectSafe(String source, int minimum, int maximum, int expected) {
+        CompiledExpression expression = CompiledExpression.compile(source, "a");
+        for (CheckedExpression.OverflowPolicy policy : CheckedExpression.OverflowPolicy.values()) {
+            CheckedExpression checked = CheckedExpression.of(expression, policy,
+                    new int[] {minimum}, new int[] {maximum});
+            check(!checked.isOverflowPossible(), source + " over [" + minimum + ", " + maximum + "] not proved safe");
+            int extreme = Math.abs((long) minimum) > Math.abs((long) maximum) ? minimum : maximum;
+            check(checked.evaluate(new int[] {extreme}) == expected, source + " at " + extreme);
+        }
+    }
+
+    private static void expectOverflow(String source, int minimum, int maximum, int value, int saturated) {
+        CompiledExpression expression = CompiledExpression.compile(source, "a");
+        int[] minimums = {minimum};
+        int[] maximums = {maximum};
+        CheckedExpression thrown = CheckedExpression.of(expression, CheckedExpression.OverflowPolicy.THROW,
+                minimums, maximums);
+        check(thrown.isOverflowPossible(), source + " over [" + minimum + ", " + maximum + "] proved safe");
+        check(outcome(thrown, new int[] {value}).equals(OVERFLOW), source + " at " + value + " did not throw");
+        CheckedExpression clamped = CheckedExpression.of(expression, CheckedExpression.OverflowPolicy.SATURATE,
+                minimums, maximums);
+        check(clamped.evaluate(new int[] {value}) == saturated, source + " at " + value + " did not saturate");
+    }
+
+    /**
+     * Evaluates every operation in {@code long} and checks it against the int range.
+     */
+    private static String reference(CompiledExpression expression, int[] vars,
+                                    CheckedExpression.OverflowPolicy policy) {
+        byte[] opcodes = expression.opcodes();
+        int[] operands = expression.operands();
+        long[] stack = new long[expression.getMaxDepth()];
+        int size = 0;
+        for (int i = 0; i < opcodes.length; i++) {
+            if (opcodes[i] == Opcode.PUSH) {
+                stack[size++] = operands[i];
+                continue;
+            }
+            if (opcodes[i] == Opcode.LOAD) {
+                stack[size++] = vars[operands[i]];
+                continue;
+            }
+            size--;
+            long left = stack[size - 1];
+            long right = stack[size];
+            long result;
+            switch (opcodes[i]) {
+                case Opcode.ADD -> result = left + right;
+                case Opcode.SUBTRACT -> result = left - right;
+                case Opcode.MULTIPLY -> result = left * right;
+                case Opcode.DIVIDE -> {
+                    if (right == 0) {
+                        return DIVISION_BY_ZERO;
+                    }
+                    result = left / right;
+                }
+                case Opcode.MIN -> result = Math.min(left, right);
+                case Opcode.MAX -> result = Math.max(left, right);
+                default -> throw new AssertionError("Unknown opcode " + opcodes[i]);
+            }
+            if (result < Integer.MIN_VALUE || result > Integer.MAX_VALUE) {
+                if (policy == CheckedExpression.OverflowPolicy.THROW) {
+                    return OVERFLOW;
+                }
+                result = Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, result));
+            }
+            stack[size - 1] = result;
+        }
+        return Long.toString(stack[0]);
+    }
+
+    private static String outcome(CheckedExpression checked, int[] vars) {
+        try {
+            return Integer.toString(checked.evaluate(vars));
+        }
+        catch (ArithmeticException e) {
+            // overflow is reported by Math.*Exact, whose message is always present
+            return "integer overflow".equals(e.getMessage()) ? OVERFLOW : DIVISION_BY_ZERO;
+        }
+    }
+
+    /**
+     * @return a range that is either tiny, small, next to an int bound or the whole int range
+     */
+    private static long[] range(Random random) {
+        long low;
+        long high;
+        switch (random.nextInt(5)) {
+            case 0 -> {
+                low = Integer.MIN_VALUE;
+                high = Integer.MAX_VALUE;
+            }
+            case 1 -> {
+                low = -random.nextInt(100);
+                high = random.nextInt(100);
+            }
+            case 2 -> {
+                low = Integer.MAX_VALUE - random.nextInt(1000);
+                high = Integer.MAX_VALUE;
+            }
+            case 3 -> {
+                low = Integer.MIN_VALUE;
+                high = Integer.MIN_VALUE + random.nextInt(1000);
+            }
+            default -> {
+                low = random.nextInt();
+                high = low;
+            }
+        }
+        return new long[] {low, high};
+    }
+
+    /**
+     * @return one of the bounds, zero or minus one if in range, or any value in between
+     */
+    private static int value(Random random, int minimum, int maximum) {
+        int choice = random.nextInt(5);
+        if (choice == 0) {
+            return minimum;
+        }
+        if (choice == 1) {
+            return maximum;
+        }
+        if (choice == 2 && minimum <= 0 && 0 <= maximum) {
+            return 0;
+        }
+        if (choice == 3 && minimum <= -1 && -1 <= maximum) {
+            return -1;
+        }
+        return (int) (minimum + (long) (random.nextDouble() * ((long) maximum - minimum + 1)));
+    }
+
+    private static String describe(int[] vars) {
+        return Arrays.toString(vars);
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * Checks that programs folded by {@link ConstantFolder} evaluate like the original ones, including division by a
+ * constant zero, {@code MIN_VALUE / -1} and wrapping overflow in folded constants, and that folding is idempotent.
+ * Dependency-free: exits with a non-zero status on the first violated expectation.
+ * <p>
+ * Usage: {@code java -cp out ConstantFolderTest}
+ */
+public class ConstantFolderTest {
+    public static void main(String[] args) {
+        agreesWithInterpreter();
+        foldsConstantsAndIdentities();
+        keepsFailingDivisions();
+        wrapsLikeTheInterpreter();
+        System.out.println("ConstantFolder: OK");
+    }
+
+    private static void agreesWithInterpreter() {
+        RandomExpressions random = new RandomExpressions(9);
+        ConstantFolder folder = new ConstantFolder();
+        for (int round = 0; round < 3000; round++) {
+            String source = random.expression(1 + random.random().nextInt(30), 3);
+            IList<Token> polish = ShutingYard.process(ShutingYard.parse(source));
+            IList<Token> folded = folder.fold(polish);
+            check(folded.size() <= polish.size(), "folding grew " + source);
+            CompiledExpression expression = CompiledExpression.of(polish, RandomExpressions.VARIABLES);
+            CompiledExpression optimized = CompiledExpression.of(folded, RandomExpressions.VARIABLES);
+            check(CompiledExpression.of(folder.fold(folded), RandomExpressions.VARIABLES).toString()
+                    .equals(optimized.toString()), "folding twice changed " + optimized);
+            for (int i = 0; i < 10; i++) {
+                int[] vars = random.variables();
+                String expected = RandomExpressions.outcome(expression::evaluate, vars);
+                String actual = RandomExpressions.outcome(optimized::evaluate, vars);
+                check(expected.equals(actual), source + ": expected " + expected + ", got " + actual
+                        + " from " + optimized);
+            }
+        }
+    }
+
+    private static void foldsConstantsAndIdentities() {
+        expectFolded("1 + 2 * 3 - max ( 4 , 5 )", "2");
+        expectFolded("a * 1 + 0 - 0", "a");
+        expectFolded("1 * a + ( 0 + b ) / 1", "a b +");
+        expectFolded("min ( a + b , a + b ) * ( 2 - 1 )", "a b +");
+        expectFolded("max ( a , b ) - ( 3 * 0 )", "a b max");
+        expectFolded("a - b", "a b -");
+        ConstantFolder folder = new ConstantFolder();
+        folder.fold(ShutingYard.process(ShutingYard.parse("1 + 2")));
+        folder.fold(ShutingYard.process(ShutingYard.parse("a * 1")));
+        check(folder.getRemovedCount() == 4, "removed " + folder.getRemovedCount() + " tokens");
+    }
+
+    private static void keepsFailingDivisions() {
+        expectFolded("5 / ( 1 - 1 )", "5 0 /");
+        expectFolded("a / 0 * 1", "a 0 /");
+        String[] sources = {"5 / ( 1 - 1 )", "min ( a / 0 , a / 0 )", "0 + b / ( a - a )", "( 7 / 0 ) * 1"};
+        for (String source : sources) {
+            IList<Token> folded = new ConstantFolder().fold(ShutingYard.process(ShutingYard.parse(source)));
+            CompiledExpression expression = CompiledExpression.of(folded, RandomExpressions.VARIABLES);
+            check(RandomExpressions.outcome(expression::evaluate, new int[] {3, 4, 0}).equals("ArithmeticException"),
+                    source + " no longer divides by zero: " + expression);
+        }
+    }
+
+    private static void wrapsLikeTheInterpreter() {
+        // MIN_VALUE is only reachable through folding, as literals are never negative
+        String minValue = "( 0 - 2147483647 - 1 )";
+        expectFolded(minValue + " / ( 0 - 1 )", Integer.toString(Integer.MIN_VALUE));
+        expectFolded("2147483647 + 1", Integer.toString(Integer.MIN_VALUE));
+        expectFolded("65536 * 65536", "0");
+        expectFolded(minValue + " * ( 0 - 1 ) - a", Integer.MIN_VALUE + " a -");
+    }
+
+    private static void expectFolded(String source, String expected) {
+        IList<Token> polish = ShutingYard.process(ShutingYard.parse(source));
+        String folded = CompiledExpression.of(new ConstantFolder().fold(polish)).toString();
+        check(folded.equals(expected), source + " folded to " + folded + " instead of " + expected);
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
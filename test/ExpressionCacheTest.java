@@ -0,0 +1,95 @@
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Checks that {@link ExpressionCache} stays within its bounds under concurrent misses, that sampled eviction keeps
+ * the hottest entries for both policies, and that cached programs match freshly compiled ones.
+ * Dependency-free: exits with a non-zero status on the first violated expectation.
+ * <p>
+ * Usage: {@code java -cp out ExpressionCacheTest}
+ */
+public class ExpressionCacheTest {
+    public static void main(String[] args) throws Exception {
+        staysWithinBounds();
+        keepsHotEntries(ExpressionCache.EvictionPolicy.LRU);
+        keepsHotEntries(ExpressionCache.EvictionPolicy.LFU);
+        evictsExactlyWhenSmall();
+        doesNotCacheErrors();
+        System.out.println("ExpressionCache: OK");
+    }
+
+    private static void staysWithinBounds() throws Exception {
+        ExpressionCache cache = new ExpressionCache(100, 1000, ExpressionCache.EvictionPolicy.LRU);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<?>[] tasks = new Future<?>[4];
+            for (int t = 0; t < tasks.length; t++) {
+                int seed = t;
+                tasks[t] = executor.submit(() -> {
+                    RandomExpressions random = new RandomExpressions(seed);
+                    for (int i = 0; i < 5000; i++) {
+                        String source = i % 3 == 0 ? "a + " + (i % 50) : random.expression(1 + i % 10, 2);
+                        CompiledExpression cached = cache.get(source);
+                        check(cached.toString().equals(CompiledExpression.compile(source).toString()), source);
+                    }
+                });
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+        check(cache.size() <= 100, cache.size() + " entries");
+        check(cache.getWeight() <= 1000, "weight " + cache.getWeight());
+        check(cache.getHitCount() + cache.getMissCount() == 20000, "lookups were not all counted");
+        check(cache.getEvictionCount() > 0, "nothing was evicted");
+        cache.clear();
+        check(cache.size() == 0 && cache.getWeight() == 0, "clear left " + cache.size() + " entries");
+    }
+
+    private static void keepsHotEntries(ExpressionCache.EvictionPolicy policy) {
+        ExpressionCache cache = new ExpressionCache(50, Long.MAX_VALUE, policy);
+        CompiledExpression hot = cache.get("hot + 1");
+        for (int i = 0; i < 10000; i++) {
+            check(cache.get("hot  +  1") == hot, policy + " evicted the hot entry after " + i + " misses");
+            cache.get("cold + " + i);
+        }
+        check(cache.size() == 50, policy + " holds " + cache.size() + " entries");
+    }
+
+    private static void evictsExactlyWhenSmall() {
+        ExpressionCache cache = new ExpressionCache(3, Long.MAX_VALUE, ExpressionCache.EvictionPolicy.LRU);
+        CompiledExpression a = cache.get("a");
+        cache.get("b");
+        cache.get("c");
+        cache.get("a");
+        cache.get("d");
+        check(cache.get("a") == a, "the most recently used entry was evicted");
+        long misses = cache.getMissCount();
+        cache.get("b");
+        check(cache.getMissCount() == misses + 1, "the least recently used entry was kept");
+    }
+
+    private static void doesNotCacheErrors() {
+        ExpressionCache cache = new ExpressionCache(10, 100, ExpressionCache.EvictionPolicy.LFU);
+        for (int i = 0; i < 2; i++) {
+            try {
+                cache.get("1 +");
+                throw new AssertionError("a malformed expression compiled");
+            }
+            catch (RuntimeException e) {
+                check(e.getMessage() != null, "no message");
+            }
+        }
+        check(cache.size() == 0 && cache.getMissCount() == 2, "the error was cached");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Checks that {@link ExpressionTree} evaluates like {@link CompiledExpression#evaluate(int[])} for any threshold,
+ * pool and tree shape, including division by zero and {@code MIN_VALUE / -1} inside forked subtrees,
+ * and that {@link ExpressionTree#toBalancedProgram()} computes the same values with logarithmic stack depth.
+ * Dependency-free: exits with a non-zero status on the first violated expectation.
+ * <p>
+ * Usage: {@code java -cp out ExpressionTreeTest}
+ */
+public class ExpressionTreeTest {
+    private static final int[] THRESHOLDS = {1, 2, 3, 8, 64, ExpressionTree.DEFAULT_THRESHOLD};
+
+    public static void main(String[] args) {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            agreesWithInterpreter(pool);
+            forksLongChains(pool);
+            propagatesArithmeticErrors(pool);
+            balancedProgramAgrees();
+            balancesChains();
+            keepsNonAssociativeOperations();
+        }
+        finally {
+            pool.shutdown();
+        }
+        System.out.println("ExpressionTree: OK");
+    }
+
+    private static void agreesWithInterpreter(ForkJoinPool pool) {
+        RandomExpressions random = new RandomExpressions(42);
+        for (int round = 0; round < 2000; round++) {
+            String source = random.expression(1 + random.random().nextInt(40), 3);
+            CompiledExpression expression = CompiledExpression.compile(source, RandomExpressions.VARIABLES);
+            ExpressionTree[] trees = {ExpressionTree.of(expression), ExpressionTree.of(expression, true)};
+            for (int i = 0; i < 5; i++) {
+                int[] vars = random.variables();
+                String expected = RandomExpressions.outcome(expression::evaluate, vars);
+                for (ExpressionTree tree : trees) {
+                    for (int threshold : THRESHOLDS) {
+                        String actual = RandomExpressions.outcome(v -> tree.evaluate(pool, threshold, v), vars);
+                        check(expected.equals(actual), source + " with threshold " + threshold
+                                + ": expected " + expected + ", got " + actual);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Chains long enough that the default threshold forks, in the shapes that once evaluated slowly or deeply.
+     */
+    private static void forksLongChains(ForkJoinPool pool) {
+        String[] terms = {" - a", " + max ( 7 , b )", " * c + a", " - ( b - a )"};
+        for (String term : terms) {
+            StringBuilder builder = new StringBuilder("a");
+            for (int i = 0; i < 50000; i++) {
+                builder.append(term);
+            }
+            CompiledExpression expression = CompiledExpression.compile(builder, RandomExpressions.VARIABLES);
+            int[] vars = {3, -5, 7};
+            int expected = expression.evaluate(vars);
+            for (boolean flatten : new boolean[] {false, true}) {
+                ExpressionTree tree = ExpressionTree.of(expression, flatten);
+                for (int threshold : new int[] {100, ExpressionTree.DEFAULT_THRESHOLD}) {
+                    check(tree.evaluate(pool, threshold, vars) == expected,
+                            "chain of" + term + " with threshold " + threshold + ", flatten " + flatten);
+                }
+            }
+        }
+    }
+
+    private static void propagatesArithmeticErrors(ForkJoinPool pool) {
+        StringBuilder builder = new StringBuilder("a");
+        for (int i = 0; i < 1000; i++) {
+            builder.append(" + ( a / b )");
+        }
+        CompiledExpression expression = CompiledExpression.compile(builder, RandomExpressions.VARIABLES);
+        ExpressionTree tree = ExpressionTree.of(expression, true);
+        check(RandomExpressions.outcome(v -> tree.evaluate(pool, 2, v), new int[] {1, 0, 0})
+                .equals("ArithmeticException"), "division by zero in a forked subtree");
+        int[] overflow = {Integer.MIN_VALUE, -1, 0};
+        check(tree.evaluate(pool, 2, overflow) == expression.evaluate(overflow), "MIN_VALUE / -1 wraps around");
+    }
+
+    private static void balancedProgramAgrees() {
+        RandomExpressions random = new RandomExpressions(7);
+        for (int round = 0; round < 2000; round++) {
+            String source = random.expression(1 + random.random().nextInt(40), 3);
+            CompiledExpression expression = CompiledExpression.compile(source, RandomExpressions.VARIABLES);
+            CompiledExpression balanced = ExpressionTree.of(expression, true).toBalancedProgram();
+            check(balanced.size() == expression.size(), "instruction count changed: " + source);
+            for (int i = 0; i < 5; i++) {
+                int[] vars = random.variables();
+                String expected = RandomExpressions.outcome(expression::evaluate, vars);
+                String actual = RandomExpressions.outcome(balanced::evaluate, vars);
+                check(expected.equals(actual), source + ": expected " + expected + ", got " + actual
+                        + " from " + balanced);
+            }
+        }
+    }
+
+    private static void balancesChains() {
+        String[] operations = {" + ", " * "};
+        for (String operation : operations) {
+            StringBuilder builder = new StringBuilder("c");
+            for (int i = 0; i < 65535; i++) {
+                builder.append(operation).append(i % 2 == 0 ? "a" : "b");
+            }
+            CompiledExpression expression = CompiledExpression.compile(builder, RandomExpressions.VARIABLES);
+            CompiledExpression balanced = ExpressionTree.of(expression, true).toBalancedProgram();
+            int[] vars = {3, Integer.MAX_VALUE, -7};
+            check(balanced.evaluate(vars) == expression.evaluate(vars), "chain of" + operation + "wraps the same");
+            check(balanced.getMaxDepth() <= 17, "stack depth " + balanced.getMaxDepth() + " for 65536 operands");
+            check(Arrays.equals(balanced.getVariables(), expression.getVariables()), "variable slots");
+        }
+        CompiledExpression functions = CompiledExpression.compile("max ( max ( a , b ) , max ( c , 5 ) )",
+                RandomExpressions.VARIABLES);
+        check(ExpressionTree.of(functions, true).toBalancedProgram().toString().equals(functions.toString()),
+                "four operands are already balanced");
+    }
+
+    private static void keepsNonAssociativeOperations() {
+        String[] sources = {"a - b - c - 1", "a / b / ( c - 5 )", "a - ( b - c )", "min ( a , b ) - max ( b , c )"};
+        for (String source : sources) {
+            CompiledExpression expression = CompiledExpression.compile(source, RandomExpressions.VARIABLES);
+            CompiledExpression balanced = ExpressionTree.of(expression, true).toBalancedProgram();
+            check(balanced.toString().equals(expression.toString()), source + " became " + balanced);
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+import java.util.Iterator;
+import java.util.function.Supplier;
+
+/**
+ * Contract every {@link IList} and {@link IStack} implementation must satisfy,
+ * run against both {@link LinkedList} and {@link ArrayDeque}.
+ * Dependency-free: exits with a non-zero status on the first violated expectation.
+ * <p>
+ * Usage: {@code java -cp out ListContractTest}
+ */
+public class ListContractTest {
+    private static final String EMPTY = "The list is empty";
+
+    public static void main(String[] args) {
+        run("LinkedList", LinkedList::new);
+        run("ArrayDeque", ArrayDeque::new);
+        run("ArrayDeque(1)", () -> new ArrayDeque<>(1));
+    }
+
+    private static <L extends IList<Integer> & IStack<Integer>> void run(String name, Supplier<L> factory) {
+        emptyListThrows(factory.get());
+        stackIsLastInFirstOut(factory.get());
+        queueIsFirstInFirstOut(factory.get());
+        wrapsAroundAndGrows(factory.get());
+        iteratesFromHeadToTail(factory.get());
+        clearAllowsReuse(factory.get());
+        System.out.println(name + ": OK");
+    }
+
+    private static <L extends IList<Integer> & IStack<Integer>> void emptyListThrows(L list) {
+        assertEmpty(list);
+        list.push(1);
+        list.pop();
+        assertEmpty(list);
+        list.putFront(1);
+        list.popBack();
+        assertEmpty(list);
+    }
+
+    private static <L extends IList<Integer> & IStack<Integer>> void stackIsLastInFirstOut(L stack) {
+        for (int i = 0; i < 100; i++) {
+            stack.push(i);
+            check(stack.top() == i, "top after push " + i);
+        }
+        for (int i = 99; i >= 0; i--) {
+            check(stack.pop() == i, "pop " + i);
+        }
+        check(stack.size() == 0, "size after popping everything");
+    }
+
+    private static <L extends IList<Integer> & IStack<Integer>> void queueIsFirstInFirstOut(L queue) {
+        for (int i = 0; i < 100; i++) {
+            queue.putBack(i);
+        }
+        for (int i = 0; i < 100; i++) {
+            check(queue.head() == i, "head " + i);
+            check(queue.popFront() == i, "popFront " + i);
+        }
+        check(queue.size() == 0, "size after draining");
+    }
+
+    /**
+     * Mixes operations at both ends so that a circular buffer wraps past index 0 and grows while wrapped,
+     * checking every element against a reference model.
+     */
+    private static <L extends IList<Integer> & IStack<Integer>> void wrapsAroundAndGrows(L list) {
+        int[] model = new int[4096];
+        int first = 2048;
+        int last = 2048;
+        int next = 0;
+        for (int round = 0; round < 1500; round++) {
+            switch (round % 5) {
+                case 0:
+                case 3:
+                    list.putFront(next);
+                    model[--first] = next++;
+                    break;
+                case 1:
+                    list.push(next);
+                    model[last++] = next++;
+                    break;
+                case 2:
+                    check(list.popBack() == model[--last], "popBack in round " + round);
+                    break;
+                default:
+                    check(list.popFront() == model[first++], "popFront in round " + round);
+                    list.putFront(next);
+                    model[--first] = next++;
+                    break;
+            }
+            check(list.size() == last - first, "size in round " + round);
+            check(list.head() == model[first], "head in round " + round);
+            check(list.tail() == model[last - 1], "tail in round " + round);
+        }
+        assertContents(list, model, first, last);
+        while (last > first) {
+            check(list.pop() == model[--last], "pop while draining");
+        }
+        assertEmpty(list);
+    }
+
+    private static <L extends IList<Integer> & IStack<Integer>> void iteratesFromHeadToTail(L list) {
+        check(!list.iterator().hasNext(), "iterator of empty list");
+        int[] model = new int[40];
+        for (int i = 0; i < 20; i++) {
+            list.putBack(20 + i);
+            list.putFront(19 - i);
+        }
+        for (int i = 0; i < model.length; i++) {
+            model[i] = i;
+        }
+        assertContents(list, model, 0, model.length);
+    }
+
+    private static <L extends IList<Integer> & IStack<Integer>> void clearAllowsReuse(L list) {
+        list.clear();
+        assertEmpty(list);
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 50; i++) {
+                list.putFront(-i);
+                list.putBack(i);
+            }
+            list.popFront();
+            list.clear();
+            assertEmpty(list);
+            check(!list.iterator().hasNext(), "iterator after clear");
+            list.push(round);
+            list.putFront(-round);
+            check(list.size() == 2, "size after reuse");
+            check(list.head() == -round && list.tail() == round, "ends after reuse");
+            list.clear();
+        }
+    }
+
+    private static void assertContents(IList<Integer> list, int[] model, int from, int to) {
+        Iterator<Integer> iterator = list.iterator();
+        for (int i = from; i < to; i++) {
+            check(iterator.hasNext(), "iterator ended early at " + (i - from));
+            check(iterator.next() == model[i], "element " + (i - from));
+        }
+        check(!iterator.hasNext(), "iterator has extra elements");
+    }
+
+    private static <L extends IList<Integer> & IStack<Integer>> void assertEmpty(L list) {
+        check(list.size() == 0, "size of empty list");
+        assertThrowsEmpty(list::head, "head");
+        assertThrowsEmpty(list::tail, "tail");
+        assertThrowsEmpty(list::top, "top");
+        assertThrowsEmpty(list::popFront, "popFront");
+        assertThrowsEmpty(list::popBack, "popBack");
+        assertThrowsEmpty(list::pop, "pop");
+    }
+
+    private static void assertThrowsEmpty(Supplier<Integer> operation, String name) {
+        try {
+            operation.get();
+        }
+        catch (RuntimeException e) {
+            check(EMPTY.equals(e.getMessage()), name + " threw \"" + e.getMessage() + "\"");
+            return;
+        }
+        throw new AssertionError(name + " on an empty list did not throw");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Checks that libraries encoded by {@link PostfixCodec} read back unchanged and compile to programs that
+ * evaluate like the originals, and that corrupt or truncated input always fails with the codec's own errors.
+ * Dependency-free: exits with a non-zero status on the first violated expectation.
+ * <p>
+ * Usage: {@code java -cp out PostfixCodecTest}
+ */
+public class PostfixCodecTest {
+    public static void main(String[] args) {
+        roundTrips();
+        roundTripsAtAnyPosition();
+        rejectsCorruptedChecksum();
+        rejectsEveryCorruptedByte();
+        rejectsEveryTruncation();
+        rejectsOversizedNameLength();
+        System.out.println("PostfixCodec: OK");
+    }
+
+    private static void roundTrips() {
+        RandomExpressions random = new RandomExpressions(15);
+        for (int round = 0; round < 200; round++) {
+            IList<IList<Token>> library = library(random, random.random().nextInt(20));
+            ByteBuffer encoded = PostfixCodec.encode(library);
+            check(encoded.position() == 0 && encoded.remaining() == encoded.capacity(), "encoded buffer not flipped");
+            IList<IList<Token>> decoded = PostfixCodec.read(encoded.duplicate());
+            check(describe(decoded).equals(describe(library)), "read back " + describe(decoded));
+
+            CompiledExpression[] compiled = PostfixCodec.readCompiled(encoded.duplicate());
+            check(compiled.length == library.size(), "compiled " + compiled.length + " expressions");
+            int i = 0;
+            for (IList<Token> polish : library) {
+                CompiledExpression expected = CompiledExpression.of(polish);
+                check(compiled[i].toString().equals(expected.toString()), "compiled " + compiled[i]);
+                int[] vars = random.variables();
+                String value = RandomExpressions.outcome(compiled[i]::evaluate, vars);
+                check(value.equals(RandomExpressions.outcome(expected::evaluate, vars)), expected + " = " + value);
+                i++;
+            }
+        }
+    }
+
+    private static void roundTripsAtAnyPosition() {
+        IList<IList<Token>> library = library(new RandomExpressions(1), 5);
+        ByteBuffer encoded = PostfixCodec.encode(library);
+        ByteBuffer buffer = ByteBuffer.allocate(encoded.remaining() + 20);
+        buffer.position(7);
+        PostfixCodec.write(library, buffer);
+        check(buffer.position() == 7 + encoded.remaining(), "write stopped at " + buffer.position());
+        buffer.position(7);
+        check(describe(PostfixCodec.read(buffer)).equals(describe(library)), "read at position 7");
+        check(buffer.position() == 7 + encoded.remaining(), "read stopped at " + buffer.position());
+    }
+
+    private static void rejectsCorruptedChecksum() {
+        ByteBuffer encoded = PostfixCodec.encode(library(new RandomExpressions(2), 3));
+        int last = encoded.limit() - 1;
+        encoded.put(last, (byte) (encoded.get(last) ^ 1));
+        expectError(encoded, "Postfix library checksum mismatch");
+    }
+
+    /**
+     * Every single-byte corruption, CRC-32 detecting all of them, must fail with a plain {@link RuntimeException}.
+     */
+    private static void rejectsEveryCorruptedByte() {
+        ByteBuffer encoded = PostfixCodec.encode(library(new RandomExpressions(3), 4));
+        for (int i = 0; i < encoded.limit(); i++) {
+            for (int flip : new int[] {0x01, 0x80, 0xff}) {
+                ByteBuffer corrupt = copy(encoded);
+                corrupt.put(i, (byte) (corrupt.get(i) ^ flip));
+                expectError(corrupt, null);
+            }
+        }
+        ByteBuffer magic = copy(encoded);
+        magic.put(0, (byte) 'Q');
+        expectError(magic, "Not a postfix library");
+        ByteBuffer version = copy(encoded);
+        version.put(4, (byte) (PostfixCodec.VERSION + 1));
+        expectError(version, "Unsupported postfix library version " + (PostfixCodec.VERSION + 1));
+    }
+
+    private static void rejectsEveryTruncation() {
+        ByteBuffer encoded = PostfixCodec.encode(library(new RandomExpressions(4), 4));
+        for (int length = 0; length < encoded.limit(); length++) {
+            ByteBuffer truncated = copy(encoded).limit(length);
+            expectError(truncated, length < 5 ? "Truncated postfix library" : null);
+        }
+    }
+
+    private static void rejectsOversizedNameLength() {
+        IList<IList<Token>> library = new ArrayDeque<>();
+        library.putBack(ShutingYard.process(ShutingYard.parse("x + 1")));
+        ByteBuffer encoded = PostfixCodec.encode(library);
+        // magic, version, count and length come first, then the tag and name length of x
+        check(encoded.get(8) == 1, "unexpected layout");
+        for (int length : new int[] {0x40, 0x7f}) {
+            ByteBuffer corrupt = copy(encoded);
+            corrupt.put(8, (byte) length);
+            expectError(corrupt, "Truncated postfix library");
+        }
+    }
+
+    /**
+     * @param message expected message, or null for any message
+     */
+    private static void expectError(ByteBuffer in, String message) {
+        try {
+            PostfixCodec.read(in);
+        }
+        catch (RuntimeException e) {
+            check(e.getClass() == RuntimeException.class, "failed with " + e);
+            check(message == null || message.equals(e.getMessage()), "failed with \"" + e.getMessage() + "\"");
+            return;
+        }
+        throw new AssertionError("corrupt library was read");
+    }
+
+    /**
+     * @return postfix programs of random expressions, some folded so that they hold negative numbers,
+     * plus one with a long variable name and one with the int bounds
+     */
+    private static IList<IList<Token>> library(RandomExpressions random, int size) {
+        IList<IList<Token>> library = new ArrayDeque<>();
+        ConstantFolder folder = new ConstantFolder();
+        for (int i = 0; i < size; i++) {
+            IList<Token> polish = ShutingYard.process(ShutingYard.parse(random.expression(1 + i * 3, 2)));
+            library.putBack(i % 2 == 0 ? polish : folder.fold(polish));
+        }
+        if (size > 0) {
+            library.putBack(ShutingYard.process(ShutingYard.parse("a_rather_long_variable_name_" + "x".repeat(200)
+                    + " - ( 0 - 2147483647 - 1 ) + max ( 2147483647 , b )")));
+        }
+        return library;
+    }
+
+    private static String describe(IList<IList<Token>> library) {
+        StringBuilder builder = new StringBuilder();
+        for (IList<Token> expression : library) {
+            for (Token token : expression) {
+                builder.append(token).append(' ');
+            }
+            builder.append('\n');
+        }
+        return builder.toString();
+    }
+
+    private static ByteBuffer copy(ByteBuffer buffer) {
+        ByteBuffer copy = ByteBuffer.allocate(buffer.limit());
+        copy.put(buffer.duplicate().position(0)).flip();
+        return copy;
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
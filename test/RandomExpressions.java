@@ -0,0 +1,87 @@
+import java.util.Random;
+
+/**
+ * Random infix expressions and variable values for the test programs, including the values that make
+ * {@code int} arithmetic fail or wrap: zero divisors, {@code MIN_VALUE / -1} and operands at the int bounds.
+ */
+final class RandomExpressions {
+    static final String[] VARIABLES = {"a", "b", "c"};
+    // one constant for each of iconst, bipush, sipush and ldc_w, and both ends of the non-negative ints
+    private static final int[] CONSTANTS = {0, 1, 5, 100, 1000, 100000, Integer.MAX_VALUE};
+    private static final int[] EDGE_VALUES = {0, 1, -1, 2, Integer.MIN_VALUE, Integer.MAX_VALUE};
+    private static final String[] OPERATORS = {"+", "-", "*", "/"};
+
+    private final Random random;
+
+    RandomExpressions(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * @param terms number of operands at the top level
+     * @param depth maximum nesting depth of parentheses and function calls
+     * @return expression over {@link #VARIABLES}
+     */
+    public String expression(int terms, int depth) {
+        StringBuilder builder = new StringBuilder();
+        append(builder, terms, depth);
+        return builder.toString();
+    }
+
+    /**
+     * @return values for {@link #VARIABLES}, often zero, one, minus one or an int bound
+     */
+    public int[] variables() {
+        int[] vars = new int[VARIABLES.length];
+        for (int i = 0; i < vars.length; i++) {
+            vars[i] = random.nextBoolean() ? EDGE_VALUES[random.nextInt(EDGE_VALUES.length)] : random.nextInt();
+        }
+        return vars;
+    }
+
+    public Random random() {
+        return random;
+    }
+
+    /**
+     * @return the value as a string, or the name of the exception it failed with
+     */
+    static String outcome(IProgram program, int[] vars) {
+        try {
+            return Integer.toString(program.evaluate(vars));
+        }
+        catch (ArithmeticException e) {
+            return "ArithmeticException";
+        }
+    }
+
+    private void append(StringBuilder builder, int terms, int depth) {
+        operand(builder, depth);
+        for (int i = 1; i < terms; i++) {
+            builder.append(' ').append(OPERATORS[random.nextInt(OPERATORS.length)]).append(' ');
+            operand(builder, depth);
+        }
+    }
+
+    private void operand(StringBuilder builder, int depth) {
+        int choice = random.nextInt(depth > 0 ? 5 : 3);
+        if (choice == 0) {
+            builder.append(CONSTANTS[random.nextInt(CONSTANTS.length)]);
+        }
+        else if (choice <= 2) {
+            builder.append(VARIABLES[random.nextInt(VARIABLES.length)]);
+        }
+        else if (choice == 3) {
+            builder.append("( ");
+            append(builder, 1 + random.nextInt(5), depth - 1);
+            builder.append(" )");
+        }
+        else {
+            builder.append(random.nextBoolean() ? "max" : "min").append(" ( ");
+            append(builder, 1 + random.nextInt(3), depth - 1);
+            builder.append(" , ");
+            append(builder, 1 + random.nextInt(3), depth - 1);
+            builder.append(" )");
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ * Checks that {@link SharedExpression} evaluates like {@link CompiledExpression#evaluate(int[])}, including on
+ * expressions built from a few repeated subexpressions, and that it shares exactly the equal subtrees.
+ * Dependency-free: exits with a non-zero status on the first violated expectation.
+ * <p>
+ * Usage: {@code java -cp out SharedExpressionTest}
+ */
+public class SharedExpressionTest {
+    private static final String[] OPERATORS = {"+", "-", "*", "/"};
+
+    public static void main(String[] args) {
+        agreesWithInterpreter();
+        sharesEqualSubtrees();
+        keepsOperandOrderOfNonCommutativeOperations();
+        System.out.println("SharedExpression: OK");
+    }
+
+    private static void agreesWithInterpreter() {
+        RandomExpressions random = new RandomExpressions(25);
+        for (int round = 0; round < 3000; round++) {
+            String source = round % 2 == 0
+                    ? random.expression(1 + random.random().nextInt(40), 3)
+                    : repeated(random);
+            CompiledExpression expression = CompiledExpression.compile(source, RandomExpressions.VARIABLES);
+            SharedExpression shared = SharedExpression.of(expression);
+            check(shared.getNodeCount() <= expression.size(), "more nodes than instructions: " + source);
+            for (int i = 0; i < 10; i++) {
+                int[] vars = random.variables();
+                String expected = RandomExpressions.outcome(expression::evaluate, vars);
+                String actual = RandomExpressions.outcome(shared::evaluate, vars);
+                check(expected.equals(actual), source + ": expected " + expected + ", got " + actual
+                        + " from\n" + shared);
+            }
+        }
+    }
+
+    private static void sharesEqualSubtrees() {
+        SharedExpression swapped = share("a * b + b * a");
+        check(swapped.toString().equals("t0 = a\nt1 = b\nt2 = t0 * t1\nt3 = t2 + t2\n"), "got\n" + swapped);
+        SharedExpression functions = share("max ( a , 5 ) - max ( 5 , a ) / min ( a , 5 )");
+        check(functions.getNodeCount() == 6, functions.getNodeCount() + " nodes in\n" + functions);
+        SharedExpression distinct = share("a + b + c");
+        check(distinct.getNodeCount() == 5 && distinct.getDedupRatio() == 1, "nothing to share in\n" + distinct);
+    }
+
+    private static void keepsOperandOrderOfNonCommutativeOperations() {
+        SharedExpression shared = share("( a - b ) * ( b - a ) + a / b * ( b / a )");
+        check(shared.getNodeCount() == 9, shared.getNodeCount() + " nodes in\n" + shared);
+        int[] vars = {7, 3, 0};
+        check(shared.evaluate(vars) == (7 - 3) * (3 - 7) + 7 / 3 * (3 / 7), "value of\n" + shared);
+        check(RandomExpressions.outcome(shared::evaluate, new int[] {7, 0, 0}).equals("ArithmeticException"),
+                "division by zero");
+        int[] overflow = {Integer.MIN_VALUE, -1, 0};
+        check(shared.evaluate(overflow) == shared.getExpression().evaluate(overflow), "MIN_VALUE / -1 wraps around");
+    }
+
+    /**
+     * @return an expression combining a few random subexpressions many times, so most of it can be shared
+     */
+    private static String repeated(RandomExpressions random) {
+        String[] parts = new String[1 + random.random().nextInt(4)];
+        for (int i = 0; i < parts.length; i++) {
+            parts[i] = random.expression(1 + random.random().nextInt(4), 1);
+        }
+        StringBuilder builder = new StringBuilder("( ").append(parts[0]).append(" )");
+        int terms = 2 + random.random().nextInt(20);
+        for (int i = 1; i < terms; i++) {
+            builder.append(' ').append(OPERATORS[random.random().nextInt(OPERATORS.length)])
+                    .append(" ( ").append(parts[random.random().nextInt(parts.length)]).append(" )");
+        }
+        return builder.toString();
+    }
+
+    private static SharedExpression share(String source) {
+        return SharedExpression.of(CompiledExpression.compile(source, RandomExpressions.VARIABLES));
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Checks that {@link StreamingShuntingYard} produces the same postfix program as {@link ShutingYard} over the
+ * whole-input {@link Lexer}, whatever chunks the input arrives in and whether it comes from a reader or a channel,
+ * and that it reports the same errors at the same offsets.
+ * Dependency-free: exits with a non-zero status on the first violated expectation.
+ * <p>
+ * Usage: {@code java -cp out StreamingShuntingYardTest}
+ */
+public class StreamingShuntingYardTest {
+    public static void main(String[] args) throws IOException {
+        agreesWithShuntingYard();
+        tracksOperatorStackDepth();
+        reportsErrorsAtTheirOffsets();
+        System.out.println("StreamingShuntingYard: OK");
+    }
+
+    private static void agreesWithShuntingYard() throws IOException {
+        RandomExpressions random = new RandomExpressions(11);
+        for (int round = 0; round < 2000; round++) {
+            String source = random.expression(1 + random.random().nextInt(40), 3);
+            // back to back tokens are split only by the lexer, so chunk boundaries fall inside words and numbers
+            String compact = round % 2 == 0 ? source : source.replace(" ", "").replace(",", " , ");
+            String expected = describe(ShutingYard.process(ShutingYard.parse(source)));
+
+            StringBuilder chunked = new StringBuilder();
+            StreamingShuntingYard.process(new ChunkedReader(compact, random.random()), token -> append(chunked, token));
+            check(chunked.toString().equals(expected), compact + ": expected " + expected + ", got " + chunked);
+
+            StringBuilder channel = new StringBuilder();
+            StreamingShuntingYard.process(Channels.newChannel(
+                    new ByteArrayInputStream(compact.getBytes(StandardCharsets.US_ASCII))),
+                    token -> append(channel, token));
+            check(channel.toString().equals(expected), compact + " from a channel: got " + channel);
+
+            CompiledExpression expression = CompiledExpression.compile(source, RandomExpressions.VARIABLES);
+            CompiledExpression streamed = compile(compact);
+            int[] vars = random.variables();
+            check(RandomExpressions.outcome(streamed::evaluate, vars)
+                    .equals(RandomExpressions.outcome(expression::evaluate, vars)), compact + " evaluates differently");
+        }
+    }
+
+    private static void tracksOperatorStackDepth() {
+        IList<Token> output = new ArrayDeque<>();
+        StreamingShuntingYard yard = new StreamingShuntingYard(output::putBack);
+        for (Token token : ShutingYard.parse("max ( ( a + ( b ) ) * c , 1 ) - 2")) {
+            yard.accept(token);
+        }
+        check(yard.depth() == 1, "depth " + yard.depth() + " before finish");
+        yard.finish();
+        check(yard.depth() == 0, "depth " + yard.depth() + " after finish");
+        // max, its parenthesis, the inner parenthesis, + and the innermost parenthesis
+        check(yard.peakDepth() == 5, "peak depth " + yard.peakDepth());
+        check(describe(output).equals("a b + c * 1 max 2 - "), "got " + describe(output));
+
+        StringBuilder chain = new StringBuilder("a");
+        for (int i = 0; i < 100000; i++) {
+            chain.append(" - a * b");
+        }
+        StreamingShuntingYard flat = new StreamingShuntingYard(token -> { });
+        for (Token token : ShutingYard.parse(chain)) {
+            flat.accept(token);
+        }
+        check(flat.peakDepth() == 2, "peak depth " + flat.peakDepth() + " of a flat chain");
+    }
+
+    private static void reportsErrorsAtTheirOffsets() {
+        String[] sources = {"a + 2147483647", "a + 2147483648", "1 + b # 2", "max(1,2)*3$", "99999999999 + 1"};
+        for (String source : sources) {
+            String expected = error(() -> ShutingYard.parse(source));
+            String actual = error(() -> compile(source));
+            check(expected.equals(actual), source + ": expected \"" + expected + "\", got \"" + actual + "\"");
+        }
+    }
+
+    private static CompiledExpression compile(String source) {
+        IList<Token> output = new ArrayDeque<>();
+        try {
+            StreamingShuntingYard.process(new ChunkedReader(source, new Random(source.length())), output::putBack);
+        }
+        catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return CompiledExpression.of(output, RandomExpressions.VARIABLES);
+    }
+
+    /**
+     * @return the message of the exception thrown by the action, or an empty string if it succeeds
+     */
+    private static String error(Runnable action) {
+        try {
+            action.run();
+        }
+        catch (RuntimeException e) {
+            return e.getMessage();
+        }
+        return "";
+    }
+
+    private static String describe(IList<Token> polish) {
+        StringBuilder builder = new StringBuilder();
+        for (Token token : polish) {
+            append(builder, token);
+        }
+        return builder.toString();
+    }
+
+    private static void append(StringBuilder builder, Token token) {
+        builder.append(token).append(' ');
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+
+    /**
+     * Hands out the text a few characters at a time.
+     */
+    private static final class ChunkedReader extends Reader {
+        private final StringReader reader;
+        private final Random random;
+
+        ChunkedReader(String text, Random random) {
+            this.reader = new StringReader(text);
+            this.random = random;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            return reader.read(buffer, offset, Math.min(length, 1 + random.nextInt(7)));
+        }
+
+        @Override
+        public void close() {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+import java.util.Arrays;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Variant of {@link BatchEvaluator} whose instructions run on {@link IntVector} lanes of the preferred
+ * species of the machine, chosen at startup (for example 8 lanes with AVX2, 16 with AVX-512, 4 with NEON).
+ * Division has no lane-wise integer instruction on common hardware and falls back to a scalar loop;
+ * leftover rows of every block that do not fill a vector are handled the same way.
+ * <p>
+ * Needs the incubating Vector API: compile and run with {@code --add-modules jdk.incubator.vector}.
+ * Not thread-safe: keep one instance per thread.
+ */
+final class VectorBatchEvaluator {
+    static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    private int[][] stack = new int[0][];
+
+    /**
+     * @param columns column {@code i} holds the values of variable slot {@code i} for every row
+     * @param out     receives one result per row; its length is the number of rows
+     */
+    public void evaluate(CompiledExpression expression, int[][] columns, int[] out) {
+        if (columns.length < expression.getVariableCount()) {
+            throw new IllegalArgumentException(
+                    "Expected " + expression.getVariableCount() + " columns, got " + columns.length);
+        }
+        int rows = out.length;
+        for (int[] column : columns) {
+            if (column.length < rows) {
+                throw new IllegalArgumentException("Column is shorter than the output");
+            }
+        }
+        ensureStack(expression.getMaxDepth());
+        for (int start = 0; start < rows; start += BatchEvaluator.BLOCK_SIZE) {
+            int length = Math.min(BatchEvaluator.BLOCK_SIZE, rows - start);
+            System.arraycopy(evaluateBlock(expression, columns, start, length), 0, out, start, length);
+        }
+    }
+
+    private int[] evaluateBlock(CompiledExpression expression, int[][] columns, int start, int length) {
+        byte[] opcodes = expression.opcodes();
+        int[] operands = expression.operands();
+        int[][] stack = this.stack;
+        int size = 0;
+        for (int i = 0; i < opcodes.length; i++) {
+            if (opcodes[i] == Opcode.PUSH) {
+                Arrays.fill(stack[size++], 0, length, operands[i]);
+                continue;
+            }
+            if (opcodes[i] == Opcode.LOAD) {
+                System.arraycopy(columns[operands[i]], start, stack[size++], 0, length);
+                continue;
+            }
+
+            int[] left = stack[size - 2];
+            int[] right = stack[size - 1];
+            size--;
+            switch (opcodes[i]) {
+                case Opcode.ADD -> lanewise(Opcode.ADD, VectorOperators.ADD, left, right, length);
+                case Opcode.SUBTRACT -> lanewise(Opcode.SUBTRACT, VectorOperators.SUB, left, right, length);
+                case Opcode.MULTIPLY -> lanewise(Opcode.MULTIPLY, VectorOperators.MUL, left, right, length);
+                case Opcode.MIN -> lanewise(Opcode.MIN, VectorOperators.MIN, left, right, length);
+                case Opcode.MAX -> lanewise(Opcode.MAX, VectorOperators.MAX, left, right, length);
+                case Opcode.DIVIDE -> {
+                    for (int j = 0; j < length; j++) {
+                        left[j] /= right[j];
+                    }
+                }
+                default -> throw new RuntimeException("Unknown opcode " + opcodes[i]);
+            }
+        }
+        return stack[0];
+    }
+
+    /**
+     * {@code left[j] = left[j] operator right[j]} for {@code j < length}.
+     *
+     * @param opcode the same operation as {@code operator}, applied to the rows past the last full vector
+     */
+    private static void lanewise(byte opcode, VectorOperators.Binary operator, int[] left, int[] right, int length) {
+        int bound = SPECIES.loopBound(length);
+        int j = 0;
+        for (; j < bound; j += SPECIES.length()) {
+            IntVector.fromArray(SPECIES, left, j)
+                    .lanewise(operator, IntVector.fromArray(SPECIES, right, j))
+                    .intoArray(left, j);
+        }
+        for (; j < length; j++) {
+            left[j] = IntEvaluator.apply(opcode, left[j], right[j]);
+        }
+    }
+
+    private void ensureStack(int depth) {
+        if (stack.length >= depth) {
+            return;
+        }
+        int[][] grown = Arrays.copyOf(stack, depth);
+        for (int i = stack.length; i < depth; i++) {
+            grown[i] = new int[BatchEvaluator.BLOCK_SIZE];
+        }
+        stack = grown;
+    }
+}
@@ -0,0 +1,93 @@
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Compares {@link VectorBatchEvaluator} with the scalar {@link BatchEvaluator} on generated expressions over
+ * two variable columns, using the harness of {@link Benchmarks}.
+ * Like there, every benchmark of every configuration runs in {@code --forks} JVMs of its own, so the scalar and
+ * vector evaluators are never measured through a call site profiled for the other.
+ * <p>
+ * Usage: {@code java --add-modules jdk.incubator.vector -cp out VectorBenchmarks [--benchmarks=scalar,vector]
+ * [--rows=100000] [--lengths=10,100] [--mixes=ADDITIVE,MIXED,FUNCTIONS] [--warmup-ms=1000] [--measure-ms=1000]
+ * [--iterations=5] [--forks=1]}
+ */
+public class VectorBenchmarks {
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        String[] benchmarks = options.getOrDefault("benchmarks", "").split(",");
+        int rows = Integer.parseInt(options.getOrDefault("rows", "100000"));
+        String[] lengths = options.getOrDefault("lengths", "10,100").split(",");
+        String[] mixes = options.getOrDefault("mixes", "ADDITIVE,MIXED,FUNCTIONS").split(",");
+        long warmupMs = Long.parseLong(options.getOrDefault("warmup-ms", "1000"));
+        long measureMs = Long.parseLong(options.getOrDefault("measure-ms", "1000"));
+        int iterations = Integer.parseInt(options.getOrDefault("iterations", "5"));
+        int forks = Integer.parseInt(options.getOrDefault("forks", "1"));
+
+        Random random = new Random(42);
+        int[][] columns = new int[2][rows];
+        for (int[] column : columns) {
+            for (int i = 0; i < rows; i++) {
+                column[i] = random.nextInt(2001) - 1000;
+            }
+        }
+        int[] out = new int[rows];
+        BatchEvaluator scalar = new BatchEvaluator();
+        VectorBatchEvaluator vector = new VectorBatchEvaluator();
+
+        if (!options.getOrDefault("header", "true").equals("false")) {
+            System.out.println("species: " + VectorBatchEvaluator.SPECIES);
+            System.out.printf("%-14s %-14s %9s %14s %12s %12s%n",
+                    "benchmark", "mix", "tokens", "ns/op", "error", "ns/row");
+        }
+        for (String mixName : mixes) {
+            ExpressionGenerator.Mix mix = ExpressionGenerator.Mix.valueOf(mixName.toUpperCase(Locale.ROOT));
+            for (String length : lengths) {
+                String source = "x * ( " + new ExpressionGenerator(42, mix).generate(Integer.parseInt(length), 4)
+                        + " ) - max ( x , y ) + y";
+                CompiledExpression expression = CompiledExpression.compile(source, "x", "y");
+
+                Map<String, Supplier<Object>> suite = new LinkedHashMap<>();
+                suite.put("scalar", () -> {
+                    scalar.evaluate(expression, columns, out);
+                    return out;
+                });
+                suite.put("vector", () -> {
+                    vector.evaluate(expression, columns, out);
+                    return out;
+                });
+                for (Map.Entry<String, Supplier<Object>> benchmark : suite.entrySet()) {
+                    if (!Benchmarks.selected(benchmarks, benchmark.getKey())) {
+                        continue;
+                    }
+                    if (forks > 0) {
+                        Map<String, String> forkOptions = new LinkedHashMap<>(options);
+                        forkOptions.put("benchmarks", benchmark.getKey());
+                        forkOptions.put("mixes", mixName);
+                        forkOptions.put("lengths", length);
+                        for (int fork = 0; fork < forks; fork++) {
+                            Benchmarks.fork(VectorBenchmarks.class, forkOptions);
+                        }
+                        continue;
+                    }
+                    Benchmarks.Result result =
+                            Benchmarks.measure(benchmark.getValue(), warmupMs, measureMs, iterations);
+                    System.out.printf(Locale.ROOT, "%-14s %-14s %9d %14.1f %12.1f %12.2f%n",
+                            benchmark.getKey(), mix, expression.size(),
+                            result.nanosPerOp, result.error, result.nanosPerOp / rows);
+                }
+            }
+        }
+    }
+}